@@ -2,8 +2,12 @@ package com.infobip.interview;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
-@SpringBootApplication
+// the data source is only configured for shorthand.store.type jdbc, see StoreConfig
+@SpringBootApplication(exclude = DataSourceAutoConfiguration.class)
+@EnableScheduling
 public class ShorthandApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,63 @@
+package com.infobip.interview.cache;
+
+import com.infobip.interview.models.Redirect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Redirects of the resolved shorthands by short url in front of the dao. A shorthand never
+ * changes once registered, so entries are never invalidated, only evicted or expired.
+ * Statistics are exported over JMX.
+ */
+@Component
+@ManagedResource(objectName = "com.infobip.interview:type=RedirectCache")
+public class RedirectCache {
+
+    private final SegmentedLruCache<String, Redirect> cache;
+
+    public RedirectCache(@Value("${shorthand.cache.maximum-size:100000}") int maximumSize,
+                         @Value("${shorthand.cache.ttl-seconds:3600}") long ttlSeconds) {
+        this.cache = new SegmentedLruCache<>(maximumSize, ttlSeconds, TimeUnit.SECONDS);
+    }
+
+    public Redirect get(String shortUrl, Function<String, Redirect> loader) {
+        return cache.get(shortUrl, loader);
+    }
+
+    @ManagedAttribute
+    public long getSize() {
+        return cache.size();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return cache.hitCount();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return cache.missCount();
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    @ManagedAttribute
+    public long getExpirationCount() {
+        return cache.expirationCount();
+    }
+
+    @ManagedAttribute
+    public double getHitRatio() {
+        long hits = cache.hitCount();
+        long requests = hits + cache.missCount();
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
@@ -0,0 +1,201 @@
+package com.infobip.interview.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Size and TTL bounded cache with segmented LRU eviction: new entries go to a probation
+ * segment and are promoted to a protected segment on their second hit, so a burst of
+ * one-off keys only evicts other one-off keys.
+ * <p>
+ * Lookups go to a ConcurrentHashMap and never block. The LRU order is kept per stripe under
+ * a lock which a lookup only tries to take; if the stripe is busy the access is not
+ * recorded, so a hot key does not make its readers queue up.
+ */
+public class SegmentedLruCache<K, V> {
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final ConcurrentHashMap<K, Node<K, V>> map = new ConcurrentHashMap<>();
+    private final Stripe<K, V>[] stripes;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int maximumSize, long ttl, TimeUnit unit) {
+        int stripeCount = Integer.highestOneBit(Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 4, maximumSize / 16)));
+        stripes = new Stripe[stripeCount];
+        int stripeSize = Math.max(1, maximumSize / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(stripeSize);
+        }
+        ttlNanos = unit.toNanos(ttl);
+    }
+
+    public V get(K key) {
+        Node<K, V> node = map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node.expiresAt - System.nanoTime() < 0) {
+            expirations.increment();
+            misses.increment();
+            remove(node);
+            return null;
+        }
+        hits.increment();
+        Stripe<K, V> stripe = stripe(key);
+        if (stripe.lock.tryLock()) {
+            try {
+                stripe.access(node);
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    /**
+     * @return cached value or the loaded one, null values are not cached
+     */
+    public V get(K key, Function<K, V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        Node<K, V> node = new Node<>(key, value, System.nanoTime() + ttlNanos);
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            Node<K, V> previous = map.put(key, node);
+            if (previous != null) {
+                stripe.unlink(previous);
+            }
+            stripe.probation.put(key, node);
+            evictions.add(stripe.evict(map));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public long size() {
+        return map.size();
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    public long expirationCount() {
+        return expirations.sum();
+    }
+
+    private void remove(Node<K, V> node) {
+        Stripe<K, V> stripe = stripe(node.key);
+        stripe.lock.lock();
+        try {
+            if (map.remove(node.key, node)) {
+                stripe.unlink(node);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return stripes[h & (stripes.length - 1)];
+    }
+
+    private static class Node<K, V> {
+        final K key;
+        final V value;
+        final long expiresAt;
+        boolean isProtected;
+
+        Node(K key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static class Stripe<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        // access ordered, eldest first
+        final LinkedHashMap<K, Node<K, V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+        final LinkedHashMap<K, Node<K, V>> protectedNodes = new LinkedHashMap<>(16, 0.75f, true);
+        final int maximumSize;
+        final int protectedSize;
+
+        Stripe(int maximumSize) {
+            this.maximumSize = maximumSize;
+            this.protectedSize = maximumSize * PROTECTED_PERCENT / 100;
+        }
+
+        void access(Node<K, V> node) {
+            if (node.isProtected) {
+                // touches the entry to move it to the tail
+                protectedNodes.get(node.key);
+            } else if (probation.remove(node.key, node)) {
+                node.isProtected = true;
+                protectedNodes.put(node.key, node);
+                if (protectedNodes.size() > protectedSize) {
+                    Iterator<Node<K, V>> eldest = protectedNodes.values().iterator();
+                    Node<K, V> demoted = eldest.next();
+                    eldest.remove();
+                    demoted.isProtected = false;
+                    probation.put(demoted.key, demoted);
+                }
+            }
+        }
+
+        void unlink(Node<K, V> node) {
+            if (node.isProtected) {
+                protectedNodes.remove(node.key, node);
+            } else {
+                probation.remove(node.key, node);
+            }
+        }
+
+        int evict(Map<K, Node<K, V>> map) {
+            int evicted = 0;
+            while (probation.size() + protectedNodes.size() > maximumSize) {
+                LinkedHashMap<K, Node<K, V>> victims = probation.isEmpty() ? protectedNodes : probation;
+                Iterator<Node<K, V>> eldest = victims.values().iterator();
+                Node<K, V> victim = eldest.next();
+                eldest.remove();
+                map.remove(victim.key, victim);
+                evicted++;
+            }
+            return evicted;
+        }
+    }
+}
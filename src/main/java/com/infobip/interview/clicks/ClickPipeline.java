@@ -0,0 +1,171 @@
+package com.infobip.interview.clicks;
+
+import com.infobip.interview.db.ClickAnalytics;
+import com.infobip.interview.db.ShorthandDao;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Takes clicks off the redirect path: a redirect only puts the click into a {@link ClickQueue},
+ * a consumer thread drains it in batches into the click analytics and the hit counts of the
+ * {@link ShorthandDao}. When the queue is full a click is either dropped or the redirect waits for
+ * room, depending on {@code shorthand.clicks.backpressure}.
+ * Queue depth and counts are exported over JMX.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "com.infobip.interview:type=ClickPipeline")
+public class ClickPipeline {
+
+    public enum Backpressure {
+        DROP, BLOCK
+    }
+
+    private static final int BATCH_SIZE = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final ShorthandDao dao;
+    private final ClickAnalytics analytics;
+    private final ClickQueue queue;
+    private final Backpressure backpressure;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private Thread consumer;
+    private volatile boolean running;
+    private volatile Consumer<Map<String, Long>> listener;
+
+    @Autowired
+    public ClickPipeline(ShorthandDao dao, ClickAnalytics analytics,
+                         @Value("${shorthand.clicks.queue-size:65536}") int queueSize,
+                         @Value("${shorthand.clicks.backpressure:drop}") String backpressure) {
+        this.dao = dao;
+        this.analytics = analytics;
+        this.queue = new ClickQueue(queueSize);
+        this.backpressure = Backpressure.valueOf(backpressure.toUpperCase(Locale.ROOT));
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        consumer = new Thread(this::consume, "click-consumer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Drains the clicks still queued before the store is closed.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        consumer.join();
+    }
+
+    /**
+     * Hands the clicks per short url of every batch to {@code listener} on the consumer thread,
+     * after they are counted. Used by replicas to send their clicks to the leader.
+     */
+    public void setListener(Consumer<Map<String, Long>> listener) {
+        this.listener = listener;
+    }
+
+    public void click(String shortUrl) {
+        long now = System.currentTimeMillis();
+        if (queue.offer(shortUrl, now)) {
+            return;
+        }
+        if (backpressure == Backpressure.DROP) {
+            dropped.increment();
+            return;
+        }
+        blocked.increment();
+        while (!queue.offer(shortUrl, now)) {
+            if (!running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    private void consume() {
+        // short url -> clicks of the current batch
+        Map<String, Long> batch = new HashMap<>();
+        ClickQueue.Consumer click = (shortUrl, timeMillis) -> {
+            analytics.record(shortUrl, timeMillis);
+            batch.merge(shortUrl, 1L, Long::sum);
+        };
+        while (running || queue.size() > 0) {
+            int drained;
+            try {
+                drained = queue.drain(click, BATCH_SIZE);
+                if (drained == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                dao.addHits(batch);
+                Consumer<Map<String, Long>> listener = this.listener;
+                if (listener != null) {
+                    listener.accept(batch);
+                }
+            } catch (RuntimeException e) {
+                log.error("Failed to record {} clicks", batch.size(), e);
+                continue;
+            } finally {
+                batch.clear();
+            }
+            processed.add(drained);
+        }
+    }
+
+    @ManagedAttribute
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @ManagedAttribute
+    public int getQueueCapacity() {
+        return queue.capacity();
+    }
+
+    @ManagedAttribute
+    public String getBackpressure() {
+        return backpressure.name();
+    }
+
+    @ManagedAttribute
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    @ManagedAttribute
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @ManagedAttribute
+    public long getBlockedCount() {
+        return blocked.sum();
+    }
+
+    @ManagedAttribute
+    public long getContendedCount() {
+        return queue.contendedCount();
+    }
+}
@@ -0,0 +1,114 @@
+package com.infobip.interview.clicks;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded lock-free queue of clicks for many producers and a single consumer.
+ * <p>
+ * Clicks are kept in preallocated arrays, so offering one does not allocate. Every slot has a
+ * sequence number telling whose turn it is: a producer claims a slot by moving the tail with a
+ * CAS, fills it and publishes it by advancing the slot's sequence, the consumer reads published
+ * slots in order and hands them back to the producers of the next round the same way.
+ */
+public class ClickQueue {
+
+    private final int mask;
+    private final String[] shortUrls;
+    private final long[] times;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    // lost CAS races on the tail, only counted when one happens
+    private final LongAdder contended = new LongAdder();
+    // written by the consumer only
+    private volatile long head;
+
+    public ClickQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        shortUrls = new String[size];
+        times = new long[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    public boolean offer(String shortUrl, long timeMillis) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    shortUrls[slot] = shortUrl;
+                    times[slot] = timeMillis;
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                contended.increment();
+                position = tail.get();
+            } else if (difference < 0) {
+                // the consumer has not taken this slot of the previous round yet
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Passes up to {@code limit} clicks to the consumer, called from the consumer thread only.
+     * If the consumer throws, the click it failed on is dropped and the next drain continues
+     * after it.
+     *
+     * @return number of clicks drained
+     */
+    public int drain(Consumer consumer, int limit) {
+        long position = head;
+        int drained = 0;
+        try {
+            while (drained < limit) {
+                int slot = (int) (position & mask);
+                if (sequences.get(slot) != position + 1) {
+                    break;
+                }
+                String shortUrl = shortUrls[slot];
+                long time = times[slot];
+                shortUrls[slot] = null;
+                sequences.lazySet(slot, position + mask + 1);
+                position++;
+                drained++;
+                consumer.click(shortUrl, time);
+            }
+        } finally {
+            // the slots already handed back to the producers
+            head = position;
+        }
+        return drained;
+    }
+
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return how often a producer lost the race for a slot to another one and had to retry
+     */
+    public long contendedCount() {
+        return contended.sum();
+    }
+
+    public interface Consumer {
+        void click(String shortUrl, long timeMillis);
+    }
+}
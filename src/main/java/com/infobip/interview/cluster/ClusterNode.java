@@ -0,0 +1,10 @@
+package com.infobip.interview.cluster;
+
+import lombok.Data;
+
+@Data
+public class ClusterNode {
+    private final String id;
+    // scheme, host and port the other nodes reach this one at, without a trailing slash
+    private final String baseUrl;
+}
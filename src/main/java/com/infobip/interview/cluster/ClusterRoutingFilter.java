@@ -0,0 +1,152 @@
+package com.infobip.interview.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Sends every request to the node owning its account or short url and proxies the answer back,
+ * before any security or MVC processing. Requests are partitioned as follows:
+ * <ul>
+ * <li>{@code GET /{url}} by the short url,</li>
+ * <li>{@code POST /account} by the AccountId of the body,</li>
+ * <li>{@code /register} and {@code /register/bulk} by the username of the Basic credentials,</li>
+ * <li>{@code /statistic/{AccountId}/..} by the AccountId,</li>
+ * </ul>
+ * everything else is served by the node that received it. A forwarded request is marked, the
+ * receiving node serves it itself whatever its ring says, so a misconfigured node can not make
+ * requests go round in circles.
+ */
+public class ClusterRoutingFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LOCAL_PATHS = new HashSet<>(Arrays.asList("help", "error", "favicon.ico"));
+
+    private final ConsistentHashRing ring;
+    private final ObjectMapper objectMapper;
+    private final HttpProxy proxy;
+
+    public ClusterRoutingFilter(ConsistentHashRing ring, ObjectMapper objectMapper, int connectTimeoutMillis, int readTimeoutMillis) {
+        this.ring = ring;
+        this.objectMapper = objectMapper;
+        this.proxy = new HttpProxy(ring.self().getId(), objectMapper, connectTimeoutMillis, readTimeoutMillis);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getHeader(HttpProxy.FORWARDED_BY) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String[] segments = request.getRequestURI().substring(request.getContextPath().length()).split("/");
+        byte[] body = null;
+        String key = null;
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (segments.length == 2 && read && !LOCAL_PATHS.contains(segments[1])) {
+            key = segments[1];
+        } else if (segments.length == 2 && segments[1].equals("account") && HttpMethod.POST.matches(request.getMethod())) {
+            body = StreamUtils.copyToByteArray(request.getInputStream());
+            key = accountId(body);
+            request = new BufferedBodyRequest(request, body);
+        } else if (segments.length >= 2 && segments[1].equals("register")) {
+            key = basicUsername(request);
+        } else if (segments.length >= 3 && segments[1].equals("statistic")) {
+            key = segments[2];
+        }
+
+        ClusterNode owner = key == null ? ring.self() : ring.owner(key);
+        if (owner == ring.self()) {
+            chain.doFilter(request, response);
+        } else {
+            proxy.proxy(owner, request, body, response);
+        }
+    }
+
+    private String accountId(byte[] body) {
+        try {
+            JsonNode accountId = objectMapper.readTree(body).get("AccountId");
+            return accountId == null || !accountId.isTextual() ? null : accountId.asText();
+        } catch (IOException | RuntimeException e) {
+            // not a valid body, the local node answers that
+            return null;
+        }
+    }
+
+    /**
+     * @return username of the Basic credentials, which the owner checks, or null if there are none
+     */
+    private static String basicUsername(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header == null || !header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            return null;
+        }
+        try {
+            String credentials = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+            int colon = credentials.indexOf(':');
+            return colon < 0 ? null : credentials.substring(0, colon);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The request with its body read into memory already.
+     */
+    private static class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+    }
+}
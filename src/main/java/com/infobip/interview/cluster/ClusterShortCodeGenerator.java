@@ -0,0 +1,34 @@
+package com.infobip.interview.cluster;
+
+import com.infobip.interview.generators.ShortCodeGenerator;
+
+/**
+ * Only hands out short urls that hash to this node, so a short url is stored on the node owning
+ * the account that registered it and any node finds it through the ring. With n nodes it takes
+ * about n codes of the delegate per short url.
+ */
+public class ClusterShortCodeGenerator implements ShortCodeGenerator {
+
+    private static final int ATTEMPTS_PER_NODE = 64;
+
+    private final ShortCodeGenerator delegate;
+    private final ConsistentHashRing ring;
+    private final int maxAttempts;
+
+    public ClusterShortCodeGenerator(ShortCodeGenerator delegate, ConsistentHashRing ring) {
+        this.delegate = delegate;
+        this.ring = ring;
+        this.maxAttempts = ring.nodes().size() * ATTEMPTS_PER_NODE;
+    }
+
+    @Override
+    public String next() {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            String code = delegate.next();
+            if (ring.isLocal(code)) {
+                return code;
+            }
+        }
+        throw new IllegalStateException("No short url of node " + ring.self().getId() + " in " + maxAttempts + " attempts");
+    }
+}
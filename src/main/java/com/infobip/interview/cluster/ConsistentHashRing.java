@@ -0,0 +1,83 @@
+package com.infobip.interview.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Statically configured nodes of the cluster placed on a hash ring, each at a number of virtual
+ * points so keys spread evenly. A key belongs to the node of the first point at or after its
+ * hash, so adding or removing a node only moves the keys next to its points. The ring never
+ * changes once built, lookups are a binary search without locking.
+ */
+public class ConsistentHashRing {
+
+    private final ClusterNode self;
+    private final List<ClusterNode> nodes;
+    private final long[] points;
+    private final ClusterNode[] owners;
+
+    public ConsistentHashRing(List<ClusterNode> nodes, String selfId, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs at least one node");
+        }
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.self = nodes.stream()
+                .filter(node -> node.getId().equals(selfId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Node " + selfId + " is not one of the cluster nodes " + nodes));
+
+        long[][] placed = new long[nodes.size() * virtualNodes][];
+        for (int n = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                placed[n * virtualNodes + v] = new long[]{hash(nodes.get(n).getId() + "#" + v), n};
+            }
+        }
+        Arrays.sort(placed, (a, b) -> Long.compare(a[0], b[0]));
+        points = new long[placed.length];
+        owners = new ClusterNode[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = placed[i][0];
+            owners[i] = nodes.get((int) placed[i][1]);
+        }
+    }
+
+    public ClusterNode owner(String key) {
+        int index = Arrays.binarySearch(points, hash(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public boolean isLocal(String key) {
+        return owner(key) == self;
+    }
+
+    public ClusterNode self() {
+        return self;
+    }
+
+    public List<ClusterNode> nodes() {
+        return nodes;
+    }
+
+    /**
+     * 64-bit FNV-1a of the chars, finished with the MurmurHash3 mix so that keys differing in
+     * their last char land far apart.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
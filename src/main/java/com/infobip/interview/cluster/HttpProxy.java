@@ -0,0 +1,115 @@
+package com.infobip.interview.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.utils.Utils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Passes a request on to another node and its answer back to the client. The forwarded request
+ * is marked with {@link #FORWARDED_BY} and carries the client's address in the X-Forwarded
+ * headers; a node that can not be reached is answered with 502.
+ */
+@Slf4j
+public class HttpProxy {
+
+    public static final String FORWARDED_BY = "X-Shorthand-Forwarded-By";
+
+    // not passed on in either direction, HttpURLConnection sets its own
+    private static final Set<String> HOP_BY_HOP = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        HOP_BY_HOP.addAll(Arrays.asList("Connection", "Keep-Alive", "Proxy-Authenticate", "Proxy-Authorization",
+                "TE", "Trailer", "Transfer-Encoding", "Upgrade", "Host", "Content-Length"));
+    }
+
+    private final String selfId;
+    private final ObjectMapper objectMapper;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public HttpProxy(String selfId, ObjectMapper objectMapper, int connectTimeoutMillis, int readTimeoutMillis) {
+        this.selfId = selfId;
+        this.objectMapper = objectMapper;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    /**
+     * @param body the request body if it was read already, otherwise it is streamed from the request
+     */
+    public void proxy(ClusterNode target, HttpServletRequest request, byte[] body, HttpServletResponse response) throws IOException {
+        String query = request.getQueryString();
+        URL url = new URL(target.getBaseUrl() + request.getRequestURI() + (query == null ? "" : "?" + query));
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(request.getMethod());
+        connection.setInstanceFollowRedirects(false);
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (!HOP_BY_HOP.contains(name)) {
+                for (String value : Collections.list(request.getHeaders(name))) {
+                    connection.addRequestProperty(name, value);
+                }
+            }
+        }
+        connection.setRequestProperty(FORWARDED_BY, selfId);
+        // short urls in the answer are built from the address the client used
+        connection.setRequestProperty("X-Forwarded-For", request.getRemoteAddr());
+        connection.setRequestProperty("X-Forwarded-Proto", request.getScheme());
+        connection.setRequestProperty("X-Forwarded-Port", Integer.toString(request.getServerPort()));
+
+        int status;
+        try {
+            if (body != null || request.getContentLengthLong() > 0 || request.getHeader(HttpHeaders.TRANSFER_ENCODING) != null) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    if (body != null) {
+                        out.write(body);
+                    } else {
+                        StreamUtils.copy(request.getInputStream(), out);
+                    }
+                }
+            }
+            status = connection.getResponseCode();
+        } catch (IOException e) {
+            log.warn("Node {} at {} is unavailable: {}", target.getId(), target.getBaseUrl(), e.toString());
+            response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), Utils.response(false, "node " + target.getId() + " is unavailable"));
+            return;
+        }
+
+        response.setStatus(status);
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            // the status line comes with a null name
+            if (header.getKey() != null && !HOP_BY_HOP.contains(header.getKey())) {
+                for (String value : header.getValue()) {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+        }
+        InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+        if (in != null) {
+            try (InputStream answer = in) {
+                StreamUtils.copy(answer, response.getOutputStream());
+            }
+        }
+    }
+}
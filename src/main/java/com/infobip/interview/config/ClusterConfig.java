@@ -0,0 +1,49 @@
+package com.infobip.interview.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.cluster.ClusterNode;
+import com.infobip.interview.cluster.ClusterRoutingFilter;
+import com.infobip.interview.cluster.ConsistentHashRing;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(name = "shorthand.cluster.enabled", havingValue = "true")
+public class ClusterConfig {
+
+    /**
+     * @param nodes comma separated {@code id=baseUrl} of all nodes, this one included
+     */
+    @Bean
+    public ConsistentHashRing consistentHashRing(@Value("${shorthand.cluster.nodes}") String nodes,
+                                                 @Value("${shorthand.cluster.node-id}") String nodeId,
+                                                 @Value("${shorthand.cluster.virtual-nodes:128}") int virtualNodes) {
+        List<ClusterNode> members = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            String[] parts = node.trim().split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("shorthand.cluster.nodes entry " + node + " is not id=baseUrl");
+            }
+            members.add(new ClusterNode(parts[0].trim(), parts[1].trim().replaceAll("/+$", "")));
+        }
+        return new ConsistentHashRing(members, nodeId, virtualNodes);
+    }
+
+    @Bean
+    public FilterRegistrationBean clusterRoutingFilter(ConsistentHashRing ring, ObjectMapper objectMapper,
+                                                       @Value("${shorthand.cluster.connect-timeout-ms:1000}") int connectTimeout,
+                                                       @Value("${shorthand.cluster.read-timeout-ms:30000}") int readTimeout) {
+        FilterRegistrationBean registration = new FilterRegistrationBean(
+                new ClusterRoutingFilter(ring, objectMapper, connectTimeout, readTimeout));
+        // ahead of the security filters, the owner of the account checks the credentials
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
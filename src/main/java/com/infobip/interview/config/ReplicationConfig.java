@@ -0,0 +1,59 @@
+package com.infobip.interview.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.clicks.ClickPipeline;
+import com.infobip.interview.cluster.ClusterNode;
+import com.infobip.interview.cluster.HttpProxy;
+import com.infobip.interview.db.ClickAnalytics;
+import com.infobip.interview.db.InMemoryShorthandDao;
+import com.infobip.interview.db.ShorthandLog;
+import com.infobip.interview.metrics.MetricsRegistry;
+import com.infobip.interview.replication.ReplicaRoutingFilter;
+import com.infobip.interview.replication.ReplicationFollower;
+import com.infobip.interview.replication.ReplicationLeader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class ReplicationConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "shorthand.replication.role", havingValue = "leader")
+    public ReplicationLeader replicationLeader(InMemoryShorthandDao dao, ClickAnalytics analytics, ShorthandLog shorthandLog,
+                                              MetricsRegistry metrics,
+                                              @Value("${shorthand.replication.bind-address:localhost}") String bindAddress,
+                                              @Value("${shorthand.replication.port:9090}") int port,
+                                              @Value("${shorthand.replication.backlog:65536}") int backlog,
+                                              @Value("${shorthand.replication.heartbeat-ms:1000}") long heartbeatMillis) {
+        return new ReplicationLeader(dao, analytics, shorthandLog, metrics, bindAddress, port, backlog, heartbeatMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "shorthand.replication.role", havingValue = "follower")
+    public ReplicationFollower replicationFollower(InMemoryShorthandDao dao, ClickPipeline clicks, MetricsRegistry metrics,
+                                                  @Value("${shorthand.replication.leader-host:localhost}") String leaderHost,
+                                                  @Value("${shorthand.replication.port:9090}") int port,
+                                                  @Value("${shorthand.replication.connect-timeout-ms:1000}") int connectTimeout,
+                                                  @Value("${shorthand.replication.heartbeat-ms:1000}") long heartbeatMillis,
+                                                  @Value("${shorthand.replication.clicks-interval-ms:1000}") long clicksIntervalMillis) {
+        return new ReplicationFollower(dao, clicks, metrics, leaderHost, port, connectTimeout, heartbeatMillis, clicksIntervalMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "shorthand.replication.role", havingValue = "follower")
+    public FilterRegistrationBean replicaRoutingFilter(ObjectMapper objectMapper,
+                                                       @Value("${shorthand.replication.leader-url:http://localhost:8080}") String leaderUrl,
+                                                       @Value("${shorthand.replication.connect-timeout-ms:1000}") int connectTimeout,
+                                                       @Value("${shorthand.replication.read-timeout-ms:30000}") int readTimeout) {
+        ClusterNode leader = new ClusterNode("leader", leaderUrl.replaceAll("/+$", ""));
+        FilterRegistrationBean registration = new FilterRegistrationBean(
+                new ReplicaRoutingFilter(leader, new HttpProxy("replica", objectMapper, connectTimeout, readTimeout)));
+        // ahead of the security filters, the leader checks the credentials
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -1,13 +1,22 @@
 package com.infobip.interview.config;
 
+import com.infobip.interview.security.CachingAuthenticationProvider;
+import com.infobip.interview.security.HashingPasswordEncoder;
+import com.infobip.interview.security.ScrapeAuthenticationProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.annotation.web.builders.WebSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 /**
  * Created by mikhail.davydov on 26.09.2017.
@@ -17,9 +26,43 @@ import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 @EnableWebSecurity
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
+    private final UserDetailsService users;
+
+    @Value("${shorthand.security.bcrypt-strength:10}")
+    private int bcryptStrength;
+    @Value("${shorthand.security.credential-cache.maximum-size:10000}")
+    private int credentialCacheSize;
+    @Value("${shorthand.security.credential-cache.ttl-seconds:60}")
+    private long credentialCacheTtlSeconds;
+    @Value("${shorthand.metrics.scrape-username:prometheus}")
+    private String scrapeUsername;
+    @Value("${shorthand.metrics.scrape-password:}")
+    private String scrapePassword;
+
+    /**
+     * @param users accounts of the configured store, see {@link StoreConfig}
+     */
+    @Autowired
+    public SecurityConfig(UserDetailsService users) {
+        this.users = users;
+    }
+
     @Override
     protected void configure(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(inMemoryUserDetailsManager());
+        // without a scrape password nobody has the role the metrics need
+        if (!scrapePassword.isEmpty()) {
+            auth.authenticationProvider(new CachingAuthenticationProvider(
+                    new ScrapeAuthenticationProvider(scrapeUsername, scrapePassword, passwordEncoder()),
+                    1, credentialCacheTtlSeconds));
+        }
+        auth.authenticationProvider(cachingAuthenticationProvider());
+    }
+
+    @Override
+    public void configure(WebSecurity web) throws Exception {
+        // redirects are public and skip the security filter chain entirely,
+        // a Basic header sent along is not even decoded
+        web.ignoring().antMatchers(HttpMethod.GET, "/*");
     }
 
     @Override
@@ -27,6 +70,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         http
                 .authorizeRequests()
                 .antMatchers("/account", "/help").permitAll()
+                .antMatchers(HttpMethod.GET, "/metrics/prometheus").hasRole(ScrapeAuthenticationProvider.ROLE)
+                // the scrape account is not an account of the store
+                .antMatchers("/register/**", "/statistic/**").hasRole("USER")
                 .anyRequest().authenticated()
                 .and().httpBasic()
                 .and().sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
@@ -34,7 +80,18 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     }
 
     @Bean
-    public InMemoryUserDetailsManager inMemoryUserDetailsManager() {
-        return new InMemoryUserDetailsManager();
+    public PasswordEncoder passwordEncoder() {
+        return new HashingPasswordEncoder(bcryptStrength);
+    }
+
+    /**
+     * Basic credentials checked against the hashed passwords, verified ones remembered for a short time.
+     */
+    @Bean
+    public CachingAuthenticationProvider cachingAuthenticationProvider() {
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(users);
+        provider.setPasswordEncoder(passwordEncoder());
+        return new CachingAuthenticationProvider(provider, credentialCacheSize, credentialCacheTtlSeconds);
     }
 }
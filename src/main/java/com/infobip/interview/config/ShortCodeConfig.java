@@ -0,0 +1,43 @@
+package com.infobip.interview.config;
+
+import com.infobip.interview.cluster.ClusterShortCodeGenerator;
+import com.infobip.interview.cluster.ConsistentHashRing;
+import com.infobip.interview.db.ShorthandDao;
+import com.infobip.interview.generators.RandomShortCodeGenerator;
+import com.infobip.interview.generators.SequenceShortCodeGenerator;
+import com.infobip.interview.generators.ShortCodeGenerator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ShortCodeConfig {
+
+    @Bean
+    public ShortCodeGenerator shortCodeGenerator(ObjectProvider<ConsistentHashRing> ring, ShorthandDao dao,
+                                                 @Value("${shorthand.code.generator:random}") String generator,
+                                                 @Value("${shorthand.code.length:6}") int length,
+                                                 @Value("${shorthand.code.node-id:0}") int nodeId,
+                                                 @Value("${shorthand.code.nodes:1}") int nodes,
+                                                 @Value("${shorthand.code.block-size:1000}") int blockSize,
+                                                 @Value("${shorthand.code.sequence-start:0}") long start) {
+        ShortCodeGenerator codes;
+        switch (generator) {
+            case "random":
+                codes = new RandomShortCodeGenerator(length);
+                break;
+            case "sequence":
+                SequenceShortCodeGenerator sequence = new SequenceShortCodeGenerator(length, nodeId, nodes, blockSize, start);
+                // the dao is recovered by now, resume past the codes issued before the restart
+                dao.forEachShortUrl(sequence::skipPast);
+                codes = sequence;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown shorthand.code.generator " + generator);
+        }
+        // in a cluster only the short urls this node owns
+        ConsistentHashRing clusterRing = ring.getIfAvailable();
+        return clusterRing == null ? codes : new ClusterShortCodeGenerator(codes, clusterRing);
+    }
+}
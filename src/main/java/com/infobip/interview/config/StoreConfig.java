@@ -0,0 +1,90 @@
+package com.infobip.interview.config;
+
+import com.infobip.interview.db.HeapShorthandStore;
+import com.infobip.interview.db.HitCounters;
+import com.infobip.interview.db.InMemoryShorthandDao;
+import com.infobip.interview.db.JdbcShorthandDao;
+import com.infobip.interview.db.OffHeapShorthandStore;
+import com.infobip.interview.db.ShorthandLog;
+import com.infobip.interview.db.ShorthandStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.provisioning.JdbcUserDetailsManager;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class StoreConfig {
+
+    /**
+     * Accounts and shorthands in memory, {@code shorthand.store.type} heap or off-heap.
+     */
+    @Configuration
+    @ConditionalOnExpression("'${shorthand.store.type:heap}' != 'jdbc'")
+    public static class InMemory {
+
+        @Bean
+        public ShorthandStore shorthandStore(@Value("${shorthand.store.type:heap}") String type,
+                                             @Value("${shorthand.store.expected-size:100000}") long expectedSize) {
+            switch (type) {
+                case "heap":
+                    return new HeapShorthandStore();
+                case "off-heap":
+                    return new OffHeapShorthandStore(expectedSize);
+                default:
+                    throw new IllegalArgumentException("unknown shorthand.store.type " + type);
+            }
+        }
+
+        @Bean
+        public InMemoryUserDetailsManager inMemoryUserDetailsManager() {
+            return new InMemoryUserDetailsManager();
+        }
+
+        @Bean
+        public InMemoryShorthandDao shorthandDao(InMemoryUserDetailsManager users, ShorthandLog shorthandLog,
+                                                 HitCounters counters, ShorthandStore store) {
+            return new InMemoryShorthandDao(users, shorthandLog, counters, store);
+        }
+    }
+
+    /**
+     * Accounts and shorthands in a relational database, {@code shorthand.store.type} jdbc.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "shorthand.store.type", havingValue = "jdbc")
+    public static class Jdbc {
+
+        /**
+         * Pool of connections caching their prepared statements, configured by the properties under
+         * {@code shorthand.store.jdbc.datasource}.
+         */
+        @Bean(destroyMethod = "close")
+        @ConfigurationProperties("shorthand.store.jdbc.datasource")
+        public org.apache.tomcat.jdbc.pool.DataSource dataSource() {
+            return new org.apache.tomcat.jdbc.pool.DataSource();
+        }
+
+        @Bean
+        public JdbcUserDetailsManager jdbcUserDetailsManager(DataSource dataSource) {
+            JdbcUserDetailsManager users = new JdbcUserDetailsManager();
+            users.setDataSource(dataSource);
+            return users;
+        }
+
+        @Bean
+        public JdbcShorthandDao shorthandDao(DataSource dataSource, JdbcUserDetailsManager users,
+                                             @Value("${shorthand.store.jdbc.initialize-schema:true}") boolean initializeSchema) {
+            JdbcShorthandDao dao = new JdbcShorthandDao(dataSource, users);
+            if (initializeSchema) {
+                dao.createSchema();
+            }
+            return dao;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.infobip.interview.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.logging.AccessLog;
+import com.infobip.interview.logging.AccessLogInterceptor;
+import com.infobip.interview.metrics.MetricsInterceptor;
+import com.infobip.interview.metrics.MetricsRegistry;
+import com.infobip.interview.metrics.RequestStartFilter;
+import com.infobip.interview.services.ShorthandService;
+import com.infobip.interview.web.HttpCaching;
+import com.infobip.interview.web.RedirectFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+@Configuration
+public class WebConfig extends WebMvcConfigurerAdapter {
+
+    private final MetricsRegistry registry;
+    private final AccessLog accessLog;
+
+    @Autowired
+    public WebConfig(MetricsRegistry registry, AccessLog accessLog) {
+        this.registry = registry;
+        this.accessLog = accessLog;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        // the metrics interceptor records the start of the request the access log is timed from
+        interceptors.addInterceptor(new MetricsInterceptor(registry));
+        interceptors.addInterceptor(new AccessLogInterceptor(accessLog));
+    }
+
+    @Bean
+    public FilterRegistrationBean requestStartFilter() {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new RequestStartFilter());
+        // ahead of everything else, the latency includes the authentication
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean redirectFilter(ShorthandService service, HttpCaching caching,
+                                                 ObjectMapper objectMapper) throws JsonProcessingException {
+        FilterRegistrationBean registration = new FilterRegistrationBean(
+                new RedirectFilter(service, caching, registry, accessLog, objectMapper));
+        // behind the cluster and replica routing, ahead of the security filters, redirects are public
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+}
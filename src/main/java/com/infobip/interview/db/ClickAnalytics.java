@@ -0,0 +1,66 @@
+package com.infobip.interview.db;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Clicks per minute, hour and day keyed by short url. A link's {@link ClickSeries} grows with the
+ * number of buckets it has clicks in and is evicted once all of them are out of the kept ones.
+ * The clicks live on the heap of the node counting them and are not persisted; replicas report
+ * theirs to the leader, which serves the statistics.
+ */
+@Repository
+public class ClickAnalytics {
+
+    private final ConcurrentMap<String, ClickSeries> series = new ConcurrentHashMap<>();
+
+    public void record(String shortUrl, long timeMillis) {
+        record(shortUrl, timeMillis, 1);
+    }
+
+    public void record(String shortUrl, long timeMillis, long clicks) {
+        while (true) {
+            ClickSeries clicked = series.get(shortUrl);
+            if (clicked == null) {
+                clicked = series.computeIfAbsent(shortUrl, k -> new ClickSeries());
+            }
+            if (clicked.record(timeMillis, clicks)) {
+                return;
+            }
+            // evicted meanwhile
+            series.remove(shortUrl, clicked);
+        }
+    }
+
+    /**
+     * @return clicks of the latest {@code count} buckets up to and including the one of {@code timeMillis}, oldest first
+     */
+    public long[] counts(String shortUrl, ClickResolution resolution, int count, long timeMillis) {
+        ClickSeries clicks = series.get(shortUrl);
+        return clicks == null ? new long[count] : clicks.counts(resolution, count, timeMillis);
+    }
+
+    @Scheduled(fixedDelayString = "${shorthand.clicks.evict-interval-ms:3600000}",
+            initialDelayString = "${shorthand.clicks.evict-interval-ms:3600000}")
+    public void evictIdle() {
+        evictIdle(System.currentTimeMillis());
+    }
+
+    /**
+     * Drops the series of links not clicked within the kept buckets of any resolution.
+     */
+    public void evictIdle(long timeMillis) {
+        series.forEach((shortUrl, clicks) -> {
+            if (clicks.evictIfIdle(timeMillis)) {
+                series.remove(shortUrl, clicks);
+            }
+        });
+    }
+
+    public int size() {
+        return series.size();
+    }
+}
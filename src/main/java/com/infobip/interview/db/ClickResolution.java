@@ -0,0 +1,29 @@
+package com.infobip.interview.db;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bucket widths of the click analytics and how many of the latest buckets are kept for each.
+ */
+public enum ClickResolution {
+
+    MINUTE(TimeUnit.MINUTES.toMillis(1), 120),
+    HOUR(TimeUnit.HOURS.toMillis(1), 24 * 8),
+    DAY(TimeUnit.DAYS.toMillis(1), 400);
+
+    private final long millis;
+    private final int buckets;
+
+    ClickResolution(long millis, int buckets) {
+        this.millis = millis;
+        this.buckets = buckets;
+    }
+
+    public long millis() {
+        return millis;
+    }
+
+    public int buckets() {
+        return buckets;
+    }
+}
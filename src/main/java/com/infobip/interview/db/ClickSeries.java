@@ -0,0 +1,132 @@
+package com.infobip.interview.db;
+
+/**
+ * Clicks of one link in ring buffers of time buckets, one ring per {@link ClickResolution}.
+ * <p>
+ * Every slot holds the bucket number in its high bits and the clicks of that bucket in the low
+ * bits, so a slot left over from an older round of the ring reads as zero without being cleared
+ * first. A ring starts with two slots and doubles only when a click would overwrite a bucket
+ * still within the kept buckets of its resolution, so a link clicked now and then keeps a few
+ * slots instead of all buckets of every resolution.
+ */
+public class ClickSeries {
+
+    private static final int COUNT_BITS = 36;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final int INITIAL_SLOTS = 2;
+    private static final ClickResolution[] RESOLUTIONS = ClickResolution.values();
+
+    private final long[][] rings = new long[RESOLUTIONS.length][INITIAL_SLOTS];
+    private long lastClick;
+    private boolean evicted;
+
+    /**
+     * @return false if the series was evicted meanwhile and the clicks were not recorded
+     */
+    public synchronized boolean record(long timeMillis, long clicks) {
+        if (evicted) {
+            return false;
+        }
+        for (ClickResolution resolution : RESOLUTIONS) {
+            record(resolution, timeMillis / resolution.millis(), clicks);
+        }
+        lastClick = Math.max(lastClick, timeMillis);
+        return true;
+    }
+
+    private void record(ClickResolution resolution, long bucket, long clicks) {
+        long[] ring = rings[resolution.ordinal()];
+        while (true) {
+            int slot = (int) (bucket % ring.length);
+            long stored = ring[slot] >>> COUNT_BITS;
+            if (stored == bucket) {
+                ring[slot] += clicks;
+                return;
+            }
+            boolean inWindow = ring[slot] != 0 && Math.abs(bucket - stored) < resolution.buckets();
+            if (inWindow && ring.length < resolution.buckets()) {
+                ring = grow(resolution, ring);
+                continue;
+            }
+            if (stored < bucket) {
+                ring[slot] = bucket << COUNT_BITS | clicks;
+            }
+            // otherwise the slot has moved on to a later round already
+            return;
+        }
+    }
+
+    private long[] grow(ClickResolution resolution, long[] ring) {
+        int size = ring.length;
+        long[] grown;
+        do {
+            size = Math.min(size * 2, resolution.buckets());
+            grown = rehash(ring, size, resolution.buckets());
+        } while (grown == null);
+        rings[resolution.ordinal()] = grown;
+        return grown;
+    }
+
+    /**
+     * @return the buckets of {@code ring} in a ring of {@code size} slots, null if two buckets
+     * that are both kept fall into the same slot
+     */
+    private static long[] rehash(long[] ring, int size, int buckets) {
+        long[] rehashed = new long[size];
+        for (long value : ring) {
+            if (value == 0) {
+                continue;
+            }
+            long bucket = value >>> COUNT_BITS;
+            int slot = (int) (bucket % size);
+            long other = rehashed[slot] >>> COUNT_BITS;
+            if (rehashed[slot] == 0 || other < bucket - buckets + 1) {
+                rehashed[slot] = value;
+            } else if (bucket >= other - buckets + 1) {
+                return null;
+            }
+        }
+        return rehashed;
+    }
+
+    /**
+     * @return clicks of the latest {@code count} buckets up to and including the one of {@code timeMillis}, oldest first
+     */
+    public synchronized long[] counts(ClickResolution resolution, int count, long timeMillis) {
+        long[] ring = rings[resolution.ordinal()];
+        long last = timeMillis / resolution.millis();
+        long[] counts = new long[count];
+        for (int i = 0; i < count; i++) {
+            long bucket = last - count + 1 + i;
+            long value = ring[(int) (bucket % ring.length)];
+            counts[i] = value >>> COUNT_BITS == bucket ? value & COUNT_MASK : 0;
+        }
+        return counts;
+    }
+
+    /**
+     * Evicts the series if its last click is out of the kept buckets of every resolution.
+     *
+     * @return true if the series was evicted, it records no more clicks then
+     */
+    public synchronized boolean evictIfIdle(long timeMillis) {
+        for (ClickResolution resolution : RESOLUTIONS) {
+            if (timeMillis / resolution.millis() - lastClick / resolution.millis() < resolution.buckets()) {
+                return false;
+            }
+        }
+        evicted = true;
+        return true;
+    }
+
+    /**
+     * @return slots of all rings, for tests and sizing
+     */
+    synchronized int slots() {
+        int slots = 0;
+        for (long[] ring : rings) {
+            slots += ring.length;
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,73 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shorthand objects in concurrent maps, the default store.
+ */
+public class HeapShorthandStore implements ShorthandStore {
+
+    // shortUrl -> shorthand, global index for redirects
+    private final Map<String, Shorthand> shorthands = new ConcurrentHashMap<>();
+    // owner -> (url -> shorthand), per user index for duplicates and stats
+    private final Map<String, ConcurrentMap<String, Shorthand>> ownerShorts = new ConcurrentHashMap<>();
+
+    /**
+     * Stores the shorthand in both indexes without locking: the short url is reserved first
+     * and released again if a concurrent insert registered the same url for the owner.
+     */
+    @Override
+    public Shorthand insert(Shorthand shorthand) {
+        ConcurrentMap<String, Shorthand> shorts = ownerShorts(shorthand.getOwner());
+        Shorthand existing = shorts.get(shorthand.getUrl());
+        if (existing != null) {
+            return existing;
+        }
+        if (shorthands.putIfAbsent(shorthand.getShortUrl(), shorthand) != null) {
+            return null;
+        }
+        existing = shorts.putIfAbsent(shorthand.getUrl(), shorthand);
+        if (existing != null) {
+            shorthands.remove(shorthand.getShortUrl(), shorthand);
+            return existing;
+        }
+        return shorthand;
+    }
+
+    @Override
+    public Shorthand get(String shortUrl) {
+        return shorthands.get(shortUrl);
+    }
+
+    @Override
+    public Shorthand get(String owner, String url) {
+        Map<String, Shorthand> shorts = ownerShorts.get(owner);
+        return shorts == null ? null : shorts.get(url);
+    }
+
+    @Override
+    public Collection<Shorthand> getByOwner(String owner) {
+        Map<String, Shorthand> shorts = ownerShorts.get(owner);
+        return shorts == null ? Collections.emptyList() : shorts.values();
+    }
+
+    @Override
+    public long size() {
+        return shorthands.size();
+    }
+
+    private ConcurrentMap<String, Shorthand> ownerShorts(String owner) {
+        // get first, computeIfAbsent locks the bin even if the key is present
+        ConcurrentMap<String, Shorthand> shorts = ownerShorts.get(owner);
+        if (shorts == null) {
+            shorts = ownerShorts.computeIfAbsent(owner, k -> new ConcurrentHashMap<>());
+        }
+        return shorts;
+    }
+}
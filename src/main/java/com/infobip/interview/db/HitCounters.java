@@ -0,0 +1,51 @@
+package com.infobip.interview.db;
+
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Click counters keyed by short url. LongAdder keeps additions cheap when a link is
+ * updated from many threads at once.
+ */
+@Repository
+public class HitCounters {
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public void add(String shortUrl, long hits) {
+        counter(shortUrl).add(hits);
+    }
+
+    /**
+     * Raises the counter to at least {@code hits}. Totals read back from the log and the
+     * snapshot overlap, so recovery keeps the largest one instead of adding them up.
+     */
+    public void raise(String shortUrl, long hits) {
+        LongAdder counter = counter(shortUrl);
+        long current = counter.sum();
+        if (hits > current) {
+            counter.add(hits - current);
+        }
+    }
+
+    public long get(String shortUrl) {
+        LongAdder counter = counters.get(shortUrl);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public long size() {
+        return counters.size();
+    }
+
+    private LongAdder counter(String shortUrl) {
+        // get first, computeIfAbsent locks the bin even if the key is present
+        LongAdder counter = counters.get(shortUrl);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(shortUrl, k -> new LongAdder());
+        }
+        return counter;
+    }
+}
@@ -0,0 +1,382 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Accounts and shorthands in memory, made durable by the {@link ShorthandLog} if persistence
+ * is enabled. Hits are counted in the {@link HitCounters} and logged as running totals.
+ */
+@Slf4j
+public class InMemoryShorthandDao implements ShorthandDao {
+
+    private final InMemoryUserDetailsManager manager;
+    private final ShorthandLog shorthandLog;
+    private final HitCounters counters;
+    private final ShorthandStore store;
+    // InMemoryUserDetailsManager can not list its users
+    private final Set<String> usernames = ConcurrentHashMap.newKeySet();
+    // users whose shorthands of the last snapshot are in the store
+    private final ConcurrentMap<String, Boolean> loaded = new ConcurrentHashMap<>();
+    // shorthands of the last snapshot, a user's shorthands are moved to the store on first use
+    private volatile ShorthandSnapshot snapshot;
+
+    public InMemoryShorthandDao(InMemoryUserDetailsManager manager, ShorthandLog shorthandLog, HitCounters counters,
+                                ShorthandStore store) {
+        this.manager = manager;
+        this.shorthandLog = shorthandLog;
+        this.counters = counters;
+        this.store = store;
+    }
+
+    @PostConstruct
+    public void recover() throws IOException {
+        snapshot = shorthandLog.openShorthands();
+        if (snapshot != null) {
+            log.info("Mapped snapshot of {} shorthands of {} users", snapshot.size(), snapshot.ownerCount());
+        }
+        shorthandLog.replay(applier());
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${shorthand.persistence.snapshot-interval-ms:600000}",
+            initialDelayString = "${shorthand.persistence.snapshot-interval-ms:600000}")
+    public void snapshot() throws IOException {
+        if (!shorthandLog.isEnabled()) {
+            return;
+        }
+        ShorthandSnapshot previous = snapshot;
+        shorthandLog.snapshot(handler -> {
+            synchronized (manager) {
+                for (String username : usernames) {
+                    handler.user(username, manager.loadUserByUsername(username).getPassword());
+                }
+            }
+        }, writer -> {
+            Set<String> owners = new HashSet<>(loaded.keySet());
+            for (String username : owners) {
+                writer.owner(username);
+                for (Shorthand shorthand : store.getByOwner(username)) {
+                    writer.shorthand(shorthand, counters.get(shorthand.getShortUrl()));
+                }
+            }
+            if (previous != null) {
+                previous.visitAll(new SnapshotCopy(writer, owners, counters));
+            }
+        });
+        snapshot = shorthandLog.openShorthands();
+    }
+
+    /**
+     * @return handler storing the records it receives without logging them, for the recovery
+     * and for replicas; records already applied are ignored
+     */
+    public ShorthandLog.Handler applier() {
+        return new ShorthandLog.Handler() {
+            @Override
+            public void user(String username, String password) {
+                applyUser(username, password);
+            }
+
+            @Override
+            public void shorthand(Shorthand shorthand) {
+                applyShorthand(shorthand);
+            }
+
+            @Override
+            public void hits(String shortUrl, long hits) {
+                counters.raise(shortUrl, hits);
+            }
+        };
+    }
+
+    /**
+     * Hands all accounts, shorthands and hit totals to {@code handler}, the snapshot included.
+     * Concurrent inserts may or may not be seen.
+     */
+    public void dump(ShorthandLog.Handler handler) {
+        // the handler may block, so not under the lock of the manager
+        Map<String, String> users = new HashMap<>();
+        synchronized (manager) {
+            for (String username : usernames) {
+                users.put(username, manager.loadUserByUsername(username).getPassword());
+            }
+        }
+        users.forEach(handler::user);
+        Set<String> owners = new HashSet<>(loaded.keySet());
+        for (String username : owners) {
+            for (Shorthand shorthand : store.getByOwner(username)) {
+                handler.shorthand(shorthand);
+                long hits = counters.get(shorthand.getShortUrl());
+                if (hits > 0) {
+                    handler.hits(shorthand.getShortUrl(), hits);
+                }
+            }
+        }
+        ShorthandSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.visitAll(new ShorthandSnapshot.Visitor() {
+                private boolean skip;
+
+                @Override
+                public void owner(String owner) {
+                    skip = owners.contains(owner);
+                }
+
+                @Override
+                public void shorthand(Shorthand shorthand, long count) {
+                    if (!skip) {
+                        handler.shorthand(shorthand);
+                        long hits = Math.max(count, counters.get(shorthand.getShortUrl()));
+                        if (hits > 0) {
+                            handler.hits(shorthand.getShortUrl(), hits);
+                        }
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return manager.userExists(username);
+    }
+
+    @Override
+    public long userCount() {
+        return usernames.size();
+    }
+
+    @Override
+    public UserDetails getUser(String username) {
+        return manager.loadUserByUsername(username);
+    }
+
+    @Override
+    public UserDetails createUser(String username, String password) {
+        UserDetails user = applyUser(username, password);
+        if (user != null) {
+            shorthandLog.appendUser(username, password).join();
+        }
+        return user;
+    }
+
+    @Override
+    public Shorthand insertShorthand(Shorthand shorthand) {
+        return insertShorthandAsync(shorthand).join();
+    }
+
+    /**
+     * Stores the shorthand in memory right away, the returned future completes once it is in the log.
+     */
+    @Override
+    public CompletableFuture<Shorthand> insertShorthandAsync(Shorthand shorthand) {
+        Shorthand stored = applyShorthand(shorthand);
+        if (stored != shorthand) {
+            return CompletableFuture.completedFuture(stored);
+        }
+        return shorthandLog.appendShorthand(shorthand).thenApply(written -> shorthand);
+    }
+
+    /**
+     * Waits for the log once for the whole batch.
+     */
+    @Override
+    public List<Shorthand> insertShorthands(List<Shorthand> batch) {
+        List<Shorthand> stored = new ArrayList<>(batch.size());
+        List<CompletableFuture<Void>> appends = new ArrayList<>();
+        for (Shorthand shorthand : batch) {
+            Shorthand result = applyShorthand(shorthand);
+            if (result == shorthand) {
+                appends.add(shorthandLog.appendShorthand(shorthand));
+            }
+            stored.add(result);
+        }
+        CompletableFuture.allOf(appends.toArray(new CompletableFuture[appends.size()])).join();
+        return stored;
+    }
+
+    @Override
+    public Shorthand getShorthand(String shortUrl) {
+        Shorthand shorthand = store.get(shortUrl);
+        ShorthandSnapshot snapshot = this.snapshot;
+        if (shorthand == null && snapshot != null) {
+            Shorthand stored = snapshot.find(shortUrl);
+            if (stored != null) {
+                ensureLoaded(stored.getOwner());
+                shorthand = store.get(shortUrl);
+            }
+        }
+        return shorthand;
+    }
+
+    @Override
+    public Shorthand getUserShorthand(String username, String url) {
+        ensureLoaded(username);
+        return store.get(username, url);
+    }
+
+    @Override
+    public Collection<Shorthand> getUserShorts(String username) {
+        ensureLoaded(username);
+        return store.getByOwner(username);
+    }
+
+    @Override
+    public void forEachUserShorthand(String username, ObjLongConsumer<Shorthand> action) {
+        for (Shorthand shorthand : getUserShorts(username)) {
+            action.accept(shorthand, counters.get(shorthand.getShortUrl()));
+        }
+    }
+
+    /**
+     * The snapshot is read as a whole, the users loaded from it are not loaded again.
+     */
+    @Override
+    public void forEachShortUrl(Consumer<String> action) {
+        for (String username : new HashSet<>(loaded.keySet())) {
+            for (Shorthand shorthand : store.getByOwner(username)) {
+                action.accept(shorthand.getShortUrl());
+            }
+        }
+        ShorthandSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.visitAll(new ShorthandSnapshot.Visitor() {
+                @Override
+                public void owner(String owner) {
+                }
+
+                @Override
+                public void shorthand(Shorthand shorthand, long count) {
+                    action.accept(shorthand.getShortUrl());
+                }
+            });
+        }
+    }
+
+    @Override
+    public long getHits(String shortUrl) {
+        return counters.get(shortUrl);
+    }
+
+    /**
+     * Counts the clicks and logs the new totals.
+     */
+    @Override
+    public void addHits(Map<String, Long> clicks) {
+        Map<String, Long> totals = new HashMap<>(clicks.size() * 2);
+        for (Map.Entry<String, Long> click : clicks.entrySet()) {
+            counters.add(click.getKey(), click.getValue());
+            totals.put(click.getKey(), counters.get(click.getKey()));
+        }
+        shorthandLog.appendHits(totals);
+    }
+
+    private UserDetails applyUser(String username, String password) {
+        // InMemoryUserDetailsManager is backed by a plain HashMap
+        synchronized (manager) {
+            if (manager.userExists(username)) {
+                return null;
+            }
+            manager.createUser(User.withUsername(username).password(password).roles("USER").build());
+            usernames.add(username);
+            return manager.loadUserByUsername(username);
+        }
+    }
+
+    private Shorthand applyShorthand(Shorthand shorthand) {
+        Shorthand existing = getUserShorthand(shorthand.getOwner(), shorthand.getUrl());
+        if (existing != null) {
+            return existing;
+        }
+        // loads the owner of the short url if it is only in the snapshot
+        getShorthand(shorthand.getShortUrl());
+        return store.insert(shorthand);
+    }
+
+    private void ensureLoaded(String username) {
+        // get first, computeIfAbsent locks the bin even if the key is present
+        if (!loaded.containsKey(username)) {
+            loaded.computeIfAbsent(username, this::load);
+        }
+    }
+
+    private Boolean load(String username) {
+        ShorthandSnapshot snapshot = this.snapshot;
+        if (snapshot != null) {
+            snapshot.visitOwner(username, new ShorthandSnapshot.Visitor() {
+                @Override
+                public void owner(String owner) {
+                }
+
+                @Override
+                public void shorthand(Shorthand shorthand, long count) {
+                    store.insert(shorthand);
+                    counters.raise(shorthand.getShortUrl(), count);
+                }
+            });
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Copies the users not loaded from the previous snapshot into the new one, with the hits
+     * replayed from the log since.
+     */
+    private static class SnapshotCopy implements ShorthandSnapshot.Visitor {
+        private final ShorthandSnapshot.Writer writer;
+        private final Set<String> loaded;
+        private final HitCounters counters;
+        private boolean skip;
+
+        SnapshotCopy(ShorthandSnapshot.Writer writer, Set<String> loaded, HitCounters counters) {
+            this.writer = writer;
+            this.loaded = loaded;
+            this.counters = counters;
+        }
+
+        @Override
+        public void owner(String owner) {
+            skip = loaded.contains(owner);
+            if (!skip) {
+                try {
+                    writer.owner(owner);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        @Override
+        public void shorthand(Shorthand shorthand, long count) {
+            if (!skip) {
+                try {
+                    writer.shorthand(shorthand, Math.max(count, counters.get(shorthand.getShortUrl())));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.provisioning.JdbcUserDetailsManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Accounts and shorthands in a relational database, see {@code db/shorthand-schema.sql}. Accounts
+ * are kept by a {@link JdbcUserDetailsManager} in the tables Spring Security expects.
+ * <p>
+ * Clicks are not written per redirect: they are added up in memory and flushed periodically as
+ * one batch of {@code UPDATE}s. Hit counts read in between include the unflushed clicks; while
+ * a flush commits they may be off by the clicks of that flush. Clicks of a failed flush are
+ * kept for the next one, those not flushed when the process dies are lost.
+ */
+@Slf4j
+public class JdbcShorthandDao implements ShorthandDao {
+
+    public static final String SCHEMA = "db/shorthand-schema.sql";
+
+    private static final String COLUMNS = "short_url, owner, url, redirect_type";
+    private static final String INSERT = "INSERT INTO shorthands (" + COLUMNS + ") VALUES (?, ?, ?, ?)";
+    private static final String BY_SHORT_URL = "SELECT " + COLUMNS + " FROM shorthands WHERE short_url = ?";
+    private static final String BY_OWNER_URL = "SELECT " + COLUMNS + " FROM shorthands WHERE owner = ? AND url = ?";
+    private static final String BY_OWNER = "SELECT " + COLUMNS + " FROM shorthands WHERE owner = ?";
+    // keyset pages along the owner index, see forEachUserShorthand
+    private static final String BY_OWNER_WITH_HITS = "SELECT " + COLUMNS + ", hits FROM shorthands WHERE owner = ? AND url > ? ORDER BY url";
+    private static final int USER_PAGE_SIZE = 1000;
+    private static final String SHORT_URLS = "SELECT short_url FROM shorthands";
+    private static final String HITS = "SELECT hits FROM shorthands WHERE short_url = ?";
+    private static final String ADD_HITS = "UPDATE shorthands SET hits = hits + ? WHERE short_url = ?";
+    private static final String USER_COUNT = "SELECT COUNT(*) FROM users";
+
+    private static final RowMapper<Shorthand> SHORTHAND = (rs, row) -> Shorthand.builder()
+            .shortUrl(rs.getString(1))
+            .owner(rs.getString(2))
+            .url(rs.getString(3))
+            .redirectType(rs.getInt(4))
+            .build();
+
+    private final DataSource dataSource;
+    private final JdbcUserDetailsManager users;
+    private final JdbcTemplate jdbc;
+    // reads at most a page of rows
+    private final JdbcTemplate pages;
+    private final TransactionTemplate transactions;
+    // one flush at a time, the scheduled one may still run on shutdown
+    private final Object flushLock = new Object();
+    // clicks not yet flushed and those of the flush in progress, guarded by this
+    private Map<String, Long> unflushed = new HashMap<>();
+    private Map<String, Long> flushing = Collections.emptyMap();
+
+    public JdbcShorthandDao(DataSource dataSource, JdbcUserDetailsManager users) {
+        this.dataSource = dataSource;
+        this.users = users;
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.pages = new JdbcTemplate(dataSource);
+        pages.setMaxRows(USER_PAGE_SIZE);
+        this.transactions = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    /**
+     * Creates the tables and indexes of {@link #SCHEMA} which do not exist yet.
+     */
+    public void createSchema() {
+        DatabasePopulatorUtils.execute(new ResourceDatabasePopulator(new ClassPathResource(SCHEMA)), dataSource);
+    }
+
+    @Override
+    public boolean userExists(String username) {
+        return users.userExists(username);
+    }
+
+    @Override
+    public long userCount() {
+        return jdbc.queryForObject(USER_COUNT, Long.class);
+    }
+
+    @Override
+    public UserDetails getUser(String username) {
+        return users.loadUserByUsername(username);
+    }
+
+    @Override
+    public UserDetails createUser(String username, String password) {
+        UserDetails user = User.withUsername(username).password(password).roles("USER").build();
+        try {
+            // the user and its authorities
+            transactions.execute(status -> {
+                users.createUser(user);
+                return null;
+            });
+        } catch (DuplicateKeyException e) {
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Inserts right away and looks for the existing shorthand only if the insert conflicts.
+     */
+    @Override
+    public Shorthand insertShorthand(Shorthand shorthand) {
+        try {
+            jdbc.update(INSERT, shorthand.getShortUrl(), shorthand.getOwner(), shorthand.getUrl(), shorthand.getRedirectType());
+            return shorthand;
+        } catch (DuplicateKeyException e) {
+            // the url is registered already or the short url is taken
+            return getUserShorthand(shorthand.getOwner(), shorthand.getUrl());
+        }
+    }
+
+    /**
+     * Completes once the shorthand is committed, on the calling thread.
+     */
+    @Override
+    public CompletableFuture<Shorthand> insertShorthandAsync(Shorthand shorthand) {
+        return CompletableFuture.completedFuture(insertShorthand(shorthand));
+    }
+
+    /**
+     * Inserts the whole batch in one transaction; if any of it conflicts the batch is rolled back
+     * and inserted one by one.
+     */
+    @Override
+    public List<Shorthand> insertShorthands(List<Shorthand> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        for (Shorthand shorthand : batch) {
+            rows.add(new Object[]{shorthand.getShortUrl(), shorthand.getOwner(), shorthand.getUrl(), shorthand.getRedirectType()});
+        }
+        try {
+            transactions.execute(status -> jdbc.batchUpdate(INSERT, rows));
+            return new ArrayList<>(batch);
+        } catch (DuplicateKeyException e) {
+            List<Shorthand> stored = new ArrayList<>(batch.size());
+            for (Shorthand shorthand : batch) {
+                stored.add(insertShorthand(shorthand));
+            }
+            return stored;
+        }
+    }
+
+    @Override
+    public Shorthand getShorthand(String shortUrl) {
+        return first(jdbc.query(BY_SHORT_URL, SHORTHAND, shortUrl));
+    }
+
+    @Override
+    public Shorthand getUserShorthand(String username, String url) {
+        return first(jdbc.query(BY_OWNER_URL, SHORTHAND, username, url));
+    }
+
+    @Override
+    public Collection<Shorthand> getUserShorts(String username) {
+        return jdbc.query(BY_OWNER, SHORTHAND, username);
+    }
+
+    /**
+     * Reads the shorthands and their hits in pages of {@value #USER_PAGE_SIZE} ordered by url, the
+     * connection goes back to the pool before a page is handed to {@code action}. A slow action,
+     * such as writing a response to a slow client, does not hold a connection. Shorthands
+     * inserted meanwhile are seen or not depending on their url.
+     */
+    @Override
+    public void forEachUserShorthand(String username, ObjLongConsumer<Shorthand> action) {
+        String after = "";
+        while (true) {
+            List<Map.Entry<Shorthand, Long>> page = pages.query(BY_OWNER_WITH_HITS,
+                    (rs, row) -> new AbstractMap.SimpleImmutableEntry<>(SHORTHAND.mapRow(rs, row), rs.getLong(5)),
+                    username, after);
+            for (Map.Entry<Shorthand, Long> entry : page) {
+                action.accept(entry.getKey(), entry.getValue() + buffered(entry.getKey().getShortUrl()));
+            }
+            if (page.size() < USER_PAGE_SIZE) {
+                return;
+            }
+            after = page.get(page.size() - 1).getKey().getUrl();
+        }
+    }
+
+    /**
+     * Reads the primary key index only.
+     */
+    @Override
+    public void forEachShortUrl(Consumer<String> action) {
+        jdbc.query(SHORT_URLS, (RowCallbackHandler) rs -> action.accept(rs.getString(1)));
+    }
+
+    @Override
+    public long getHits(String shortUrl) {
+        List<Long> hits = jdbc.queryForList(HITS, Long.class, shortUrl);
+        return (hits.isEmpty() ? 0 : hits.get(0)) + buffered(shortUrl);
+    }
+
+    /**
+     * Adds the clicks to those of the next flush.
+     */
+    @Override
+    public void addHits(Map<String, Long> clicks) {
+        synchronized (this) {
+            clicks.forEach((shortUrl, count) -> unflushed.merge(shortUrl, count, Long::sum));
+        }
+    }
+
+    /**
+     * Writes the clicks added since the last flush in one transaction.
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${shorthand.store.jdbc.flush-interval-ms:1000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, Long> batch;
+            synchronized (this) {
+                if (unflushed.isEmpty()) {
+                    return;
+                }
+                batch = unflushed;
+                flushing = batch;
+                unflushed = new HashMap<>();
+            }
+            // rows always locked in the same order, concurrent flushes of other nodes do not deadlock
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            new TreeMap<>(batch).forEach((shortUrl, count) -> rows.add(new Object[]{count, shortUrl}));
+            try {
+                transactions.execute(status -> jdbc.batchUpdate(ADD_HITS, rows));
+            } catch (DataAccessException e) {
+                log.warn("Failed to flush the clicks of {} short urls, retrying with the next flush", batch.size(), e);
+                synchronized (this) {
+                    batch.forEach((shortUrl, count) -> unflushed.merge(shortUrl, count, Long::sum));
+                }
+            } finally {
+                synchronized (this) {
+                    flushing = Collections.emptyMap();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return short urls with clicks not yet flushed
+     */
+    public synchronized int unflushedCount() {
+        return unflushed.size();
+    }
+
+    private synchronized long buffered(String shortUrl) {
+        return unflushed.getOrDefault(shortUrl, 0L) + flushing.getOrDefault(shortUrl, 0L);
+    }
+
+    private static Shorthand first(List<Shorthand> shorthands) {
+        return shorthands.isEmpty() ? null : shorthands.get(0);
+    }
+}
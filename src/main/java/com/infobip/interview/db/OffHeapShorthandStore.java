@@ -0,0 +1,419 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Shorthands kept outside of the Java heap for very large link sets. Records are appended to
+ * direct buffer arenas and found through two open addressing tables of record offsets, also
+ * direct, one by short url and one by owner and url. A table of up to {@value #MAX_TABLE_SIZE}
+ * slots is more than one buffer holds, so it is split into segments of {@value #SEGMENT_SLOTS}
+ * slots, each allocated when the first entry falls into it.
+ * <p>
+ * The heap holds the owners, and the hit counts and click analytics of the links are kept on
+ * the heap by {@link HitCounters} and {@link ClickAnalytics} whatever the store; only the
+ * shorthands themselves are off-heap.
+ * <p>
+ * Record layout:
+ * <pre>
+ * [long owner's previous record + 1][int owner id][short redirectType][short code length][int url length]
+ * [int code hash][int url hash][int number of the record among the owner's][code][url]
+ * </pre>
+ * Records never change once written, so a found record is decoded without a lock and an owner's
+ * shorthands are iterated along the chain of previous records. Inserts are serialized by the
+ * write lock of a {@link StampedLock}; table lookups run as optimistic reads and are only
+ * repeated under the read lock if an insert ran meanwhile.
+ * <p>
+ * Every lookup decodes a new Shorthand, which is what {@link com.infobip.interview.cache.RedirectCache}
+ * is for.
+ */
+public class OffHeapShorthandStore implements ShorthandStore {
+
+    private static final int ARENA_SIZE = 1 << 26;
+    private static final int HEADER = 32;
+    private static final int SEGMENT_SLOTS = 1 << 13;
+    private static final int MAX_TABLE_SIZE = 1 << 28;
+    // the tables are kept at most half full
+    public static final long MAX_SIZE = MAX_TABLE_SIZE / 2;
+    private static final long NOT_FOUND = -1;
+
+    private final StampedLock lock = new StampedLock();
+    private final Map<String, Owner> owners = new ConcurrentHashMap<>();
+    private volatile Owner[] ownersById = new Owner[16];
+    private volatile ByteBuffer[] arenas = new ByteBuffer[0];
+    private volatile Table codeTable;
+    private volatile Table urlTable;
+    private volatile long size;
+
+    public OffHeapShorthandStore(long expectedSize) {
+        int tableSize = tableSize(expectedSize);
+        codeTable = new Table(tableSize);
+        urlTable = new Table(tableSize);
+    }
+
+    @Override
+    public Shorthand insert(Shorthand shorthand) {
+        byte[] code = shorthand.getShortUrl().getBytes(StandardCharsets.UTF_8);
+        byte[] url = shorthand.getUrl().getBytes(StandardCharsets.UTF_8);
+        int codeHash = ShorthandSnapshot.hash(shorthand.getShortUrl());
+        long stamp = lock.writeLock();
+        try {
+            Owner owner = owners.get(shorthand.getOwner());
+            if (owner != null) {
+                long existing = findUrl(owner.id, url, urlHash(owner.id, shorthand.getUrl()));
+                if (existing != NOT_FOUND) {
+                    return decode(existing);
+                }
+            }
+            if (findCode(code, codeHash) != NOT_FOUND) {
+                return null;
+            }
+            if (owner == null) {
+                owner = addOwner(shorthand.getOwner());
+            }
+            if ((size + 1) * 2 > codeTable.slots) {
+                codeTable = grow(codeTable, true);
+                urlTable = grow(urlTable, false);
+            }
+            int urlHash = urlHash(owner.id, shorthand.getUrl());
+            long record = append(owner, shorthand.getRedirectType(), code, url, codeHash, urlHash);
+            put(codeTable, codeHash, record);
+            put(urlTable, urlHash, record);
+            owner.count++;
+            owner.head = record + 1;
+            size++;
+            return shorthand;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Shorthand get(String shortUrl) {
+        byte[] code = shortUrl.getBytes(StandardCharsets.UTF_8);
+        int hash = ShorthandSnapshot.hash(shortUrl);
+        long stamp = lock.tryOptimisticRead();
+        long record;
+        try {
+            record = findCode(code, hash);
+        } catch (RuntimeException e) {
+            // a table or arena changing under the optimistic read
+            record = NOT_FOUND;
+            stamp = 0;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                record = findCode(code, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return record == NOT_FOUND ? null : decode(record);
+    }
+
+    @Override
+    public Shorthand get(String ownerName, String url) {
+        Owner owner = owners.get(ownerName);
+        if (owner == null) {
+            return null;
+        }
+        byte[] bytes = url.getBytes(StandardCharsets.UTF_8);
+        int hash = urlHash(owner.id, url);
+        long stamp = lock.tryOptimisticRead();
+        long record;
+        try {
+            record = findUrl(owner.id, bytes, hash);
+        } catch (RuntimeException e) {
+            record = NOT_FOUND;
+            stamp = 0;
+        }
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                record = findUrl(owner.id, bytes, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return record == NOT_FOUND ? null : decode(record);
+    }
+
+    /**
+     * @return the owner's shorthands as of this call, newest first, decoded while iterating
+     */
+    @Override
+    public Collection<Shorthand> getByOwner(String ownerName) {
+        Owner owner = owners.get(ownerName);
+        if (owner == null) {
+            return Collections.emptyList();
+        }
+        long head = owner.head;
+        int count = head == 0 ? 0 : arena(head - 1).getInt(position(head - 1) + 28) + 1;
+        return new AbstractCollection<Shorthand>() {
+            @Override
+            public Iterator<Shorthand> iterator() {
+                return new Iterator<Shorthand>() {
+                    private long next = head;
+                    private int left = count;
+
+                    @Override
+                    public boolean hasNext() {
+                        return left > 0 && next != 0;
+                    }
+
+                    @Override
+                    public Shorthand next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        long record = next - 1;
+                        next = arena(record).getLong(position(record));
+                        left--;
+                        return decode(record);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return direct memory taken by the arenas and tables
+     */
+    public long offHeapBytes() {
+        long bytes = codeTable.bytes() + urlTable.bytes();
+        for (ByteBuffer arena : arenas) {
+            bytes += arena.capacity();
+        }
+        return bytes;
+    }
+
+    private Owner addOwner(String name) {
+        Owner[] byId = ownersById;
+        int id = owners.size();
+        if (id == byId.length) {
+            byId = Arrays.copyOf(byId, id * 2);
+        }
+        Owner owner = new Owner(id, name);
+        byId[id] = owner;
+        ownersById = byId;
+        owners.put(name, owner);
+        return owner;
+    }
+
+    private long append(Owner owner, int redirectType, byte[] code, byte[] url, int codeHash, int urlHash) {
+        int length = HEADER + code.length + url.length;
+        ByteBuffer[] current = arenas;
+        ByteBuffer arena = current.length == 0 ? null : current[current.length - 1];
+        if (arena == null || arena.remaining() < length) {
+            arena = ByteBuffer.allocateDirect(Math.max(ARENA_SIZE, length));
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = arena;
+            arenas = current;
+        }
+        int position = arena.position();
+        arena.putLong(owner.head)
+                .putInt(owner.id)
+                .putShort((short) redirectType)
+                .putShort((short) code.length)
+                .putInt(url.length)
+                .putInt(codeHash)
+                .putInt(urlHash)
+                .putInt(owner.count)
+                .put(code)
+                .put(url);
+        return (long) (current.length - 1) << 32 | position;
+    }
+
+    private long findCode(byte[] code, int hash) {
+        Table table = codeTable;
+        int mask = table.slots - 1;
+        for (int i = 0, slot = hash & mask; i <= mask; i++, slot = (slot + 1) & mask) {
+            long value = table.get(slot);
+            if (value == 0) {
+                return NOT_FOUND;
+            }
+            long record = value - 1;
+            ByteBuffer arena = arena(record);
+            int position = position(record);
+            if (arena.getInt(position + 20) == hash
+                    && equalBytes(arena, position + HEADER, arena.getShort(position + 14) & 0xffff, code)) {
+                return record;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private long findUrl(int ownerId, byte[] url, int hash) {
+        Table table = urlTable;
+        int mask = table.slots - 1;
+        for (int i = 0, slot = hash & mask; i <= mask; i++, slot = (slot + 1) & mask) {
+            long value = table.get(slot);
+            if (value == 0) {
+                return NOT_FOUND;
+            }
+            long record = value - 1;
+            ByteBuffer arena = arena(record);
+            int position = position(record);
+            if (arena.getInt(position + 24) == hash && arena.getInt(position + 8) == ownerId
+                    && equalBytes(arena, position + HEADER + (arena.getShort(position + 14) & 0xffff), arena.getInt(position + 16), url)) {
+                return record;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    private static void put(Table table, int hash, long record) {
+        int mask = table.slots - 1;
+        int slot = hash & mask;
+        while (table.get(slot) != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.set(slot, record + 1);
+    }
+
+    /**
+     * @return a table of twice the size with the entries of the given one, which is left as it is
+     * for optimistic readers still probing it
+     */
+    private Table grow(Table table, boolean byCode) {
+        int slots = table.slots;
+        if (slots >= MAX_TABLE_SIZE) {
+            throw new IllegalStateException("Off-heap shorthand store is full with " + size + " shorthands");
+        }
+        Table grown = new Table(slots * 2);
+        for (int slot = 0; slot < slots; slot++) {
+            long value = table.get(slot);
+            if (value != 0) {
+                long record = value - 1;
+                put(grown, arena(record).getInt(position(record) + (byCode ? 20 : 24)), record);
+            }
+        }
+        return grown;
+    }
+
+    private Shorthand decode(long record) {
+        ByteBuffer arena = arena(record);
+        int position = position(record);
+        int codeLength = arena.getShort(position + 14) & 0xffff;
+        return Shorthand.builder()
+                .owner(ownersById[arena.getInt(position + 8)].name)
+                .redirectType((int) arena.getShort(position + 12))
+                .shortUrl(readString(arena, position + HEADER, codeLength))
+                .url(readString(arena, position + HEADER + codeLength, arena.getInt(position + 16)))
+                .build();
+    }
+
+    private ByteBuffer arena(long record) {
+        return arenas[(int) (record >>> 32)];
+    }
+
+    private static int position(long record) {
+        return (int) record;
+    }
+
+    private static int urlHash(int ownerId, String url) {
+        return ShorthandSnapshot.hash(url) + 31 * ownerId;
+    }
+
+    private static boolean equalBytes(ByteBuffer buffer, int offset, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readString(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int tableSize(long expectedSize) {
+        long slots = Math.max(Math.min(expectedSize, MAX_SIZE) * 2, 16);
+        return (int) (Long.highestOneBit(slots - 1) << 1);
+    }
+
+    /**
+     * Slots of record offsets + 1, 0 if empty, in direct buffers of up to {@value #SEGMENT_SLOTS}
+     * slots each. A segment is allocated by the first write into it, under the write lock; until
+     * then its slots read as empty.
+     */
+    private static class Table {
+        final int slots;
+        private final int segmentSlots;
+        private final ByteBuffer[] segments;
+
+        Table(int slots) {
+            this.slots = slots;
+            this.segmentSlots = Math.min(slots, SEGMENT_SLOTS);
+            this.segments = new ByteBuffer[slots / segmentSlots];
+        }
+
+        long get(int slot) {
+            ByteBuffer segment = segments[slot / segmentSlots];
+            return segment == null ? 0 : segment.getLong((slot % segmentSlots) * 8);
+        }
+
+        void set(int slot, long value) {
+            ByteBuffer segment = segments[slot / segmentSlots];
+            if (segment == null) {
+                segment = ByteBuffer.allocateDirect(segmentSlots * 8);
+                segments[slot / segmentSlots] = segment;
+            }
+            segment.putLong((slot % segmentSlots) * 8, value);
+        }
+
+        long bytes() {
+            long bytes = 0;
+            for (ByteBuffer segment : segments) {
+                if (segment != null) {
+                    bytes += segment.capacity();
+                }
+            }
+            return bytes;
+        }
+    }
+
+    private static class Owner {
+        final int id;
+        final String name;
+        // last record + 1, 0 if none
+        volatile long head;
+        // written under the write lock only
+        int count;
+
+        Owner(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+}
@@ -1,51 +1,76 @@
 package com.infobip.interview.db;
 
 import com.infobip.interview.models.Shorthand;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.provisioning.InMemoryUserDetailsManager;
-import org.springframework.stereotype.Repository;
 
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
 
 /**
+ * Accounts, shorthands and their hit counts. Kept in memory by {@link InMemoryShorthandDao} or in a
+ * relational database by {@link JdbcShorthandDao}, chosen by {@code shorthand.store.type}.
+ * <p>
  * Created by mikhail.davydov on 26.09.2017.
  */
+public interface ShorthandDao {
 
-@Slf4j
-@Repository
-public class ShorthandDao {
+    boolean userExists(String username);
 
-    private final InMemoryUserDetailsManager manager;
-    private final Map<String, List<Shorthand>> userShorts = new HashMap<>();
+    long userCount();
 
-    @Autowired
-    public ShorthandDao(InMemoryUserDetailsManager manager) {
-        this.manager = manager;
-    }
+    UserDetails getUser(String username);
 
-    public boolean userExists(String username) {
-        return manager.userExists(username);
-    }
+    /**
+     * @return created user or null if the username is already taken
+     */
+    UserDetails createUser(String username, String password);
 
-    public UserDetails getUser(String username) {
-        return manager.loadUserByUsername(username);
-    }
+    /**
+     * @return stored shorthand, the already registered one for the same url,
+     * or null if the short url is taken and nothing was stored
+     */
+    Shorthand insertShorthand(Shorthand shorthand);
 
-    public UserDetails createUser(String username, String password) {
-        manager.createUser(User.withUsername(username).password(password).roles("USER").build());
-        return manager.loadUserByUsername(username);
-    }
+    /**
+     * Stores the shorthand like {@link #insertShorthand(Shorthand)}, possibly without waiting
+     * until it is durable. Whether the short url was taken is known right away, the returned
+     * future is already complete then.
+     *
+     * @return result of {@link #insertShorthand(Shorthand)}
+     */
+    CompletableFuture<Shorthand> insertShorthandAsync(Shorthand shorthand);
 
-    public void insertShorthand(String username, List<Shorthand> shorts) {
-        userShorts.put(username, shorts);
-    }
+    /**
+     * Stores the shorthands like {@link #insertShorthand(Shorthand)}.
+     *
+     * @return results of {@link #insertShorthand(Shorthand)} in the order of the batch
+     */
+    List<Shorthand> insertShorthands(List<Shorthand> batch);
 
-    public List<Shorthand> getUserShorts(String username) {
-        return userShorts.get(username);
-    }
+    Shorthand getShorthand(String shortUrl);
+
+    Shorthand getUserShorthand(String username, String url);
+
+    Collection<Shorthand> getUserShorts(String username);
+
+    /**
+     * Hands each of the user's shorthands with its hit count to {@code action}.
+     */
+    void forEachUserShorthand(String username, ObjLongConsumer<Shorthand> action);
+
+    /**
+     * Hands every stored short url to {@code action}, reading the whole store.
+     */
+    void forEachShortUrl(Consumer<String> action);
+
+    long getHits(String shortUrl);
+
+    /**
+     * @param clicks clicks per short url to add to the hit counts
+     */
+    void addHits(Map<String, Long> clicks);
 }
@@ -0,0 +1,503 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead log of accounts and shorthands with periodic snapshots.
+ * <p>
+ * Appends are queued and written by a single writer thread which takes everything queued
+ * so far, writes it with one {@link FileChannel#write} and one {@link FileChannel#force},
+ * and only then completes the futures of the batch (group commit).
+ * <p>
+ * The log is split into segments {@code log-<n>.dat}. A snapshot switches to a new segment,
+ * writes the shorthands to the memory-mapped {@code shorthands.dat} (see {@link ShorthandSnapshot}),
+ * the accounts to {@code snapshot.dat} and deletes the older segments.
+ * Recovery reads the snapshot and then the remaining segments in order; replayed records
+ * may repeat state already in the snapshot, so handlers have to be idempotent. For the same
+ * reason hits are logged as running totals per short url rather than increments.
+ * <p>
+ * Every record is framed as {@code [int length][int crc32][payload]}, a torn record at
+ * the end of a segment stops the replay of that segment.
+ */
+@Slf4j
+@Component
+public class ShorthandLog {
+
+    private static final byte USER = 1;
+    private static final byte SHORTHAND = 2;
+    private static final byte HITS = 3;
+
+    private static final String SNAPSHOT = "snapshot.dat";
+    private static final String SHORTHANDS = "shorthands.dat";
+    private static final String SEGMENT_PREFIX = "log-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int BATCH_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Receives the records on replay and writes them on snapshot.
+     */
+    public interface Handler {
+        void user(String username, String password);
+
+        void shorthand(Shorthand shorthand);
+
+        void hits(String shortUrl, long hits);
+    }
+
+    /**
+     * Writes all shorthands into a new mapped snapshot.
+     */
+    public interface ShorthandSource {
+        void write(ShorthandSnapshot.Writer writer) throws IOException;
+    }
+
+    private final boolean enabled;
+    private final Path directory;
+    private final BlockingQueue<Append> queue = new LinkedBlockingQueue<>();
+    private final Object segmentLock = new Object();
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BUFFER_SIZE);
+    private FileChannel segment;
+    private long segmentNumber;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile Consumer<byte[]> listener;
+
+    public ShorthandLog(@Value("${shorthand.persistence.enabled:false}") boolean enabled,
+                        @Value("${shorthand.persistence.directory:data}") String directory) {
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Long> segments = segments();
+        segmentNumber = segments.isEmpty() ? 0 : segments.get(segments.size() - 1);
+        openNextSegment();
+        running = true;
+        writer = new Thread(this::writeLoop, "shorthand-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Shorthand log opened in {}", directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void close() throws Exception {
+        if (!enabled || writer == null) {
+            return;
+        }
+        running = false;
+        writer.join();
+        synchronized (segmentLock) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Hands the framed records of every append to {@code listener} on the appending thread,
+     * also when persistence is disabled. Used to stream the changes to replicas.
+     */
+    public void setListener(Consumer<byte[]> listener) {
+        this.listener = listener;
+    }
+
+    public CompletableFuture<Void> appendUser(String username, String password) {
+        return append(out -> writeUser(out, username, password));
+    }
+
+    public CompletableFuture<Void> appendShorthand(Shorthand shorthand) {
+        return append(out -> writeShorthand(out, shorthand));
+    }
+
+    /**
+     * Appends the current hit totals of a batch of short urls as one queued write.
+     */
+    public CompletableFuture<Void> appendHits(Map<String, Long> totals) {
+        if (totals.isEmpty() || !enabled && listener == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream(totals.size() * 32);
+        Handler writer = writer(records);
+        totals.forEach(writer::hits);
+        return append(records.toByteArray());
+    }
+
+    /**
+     * @return handler writing the records it receives framed to {@code out}
+     */
+    public static Handler writer(OutputStream out) {
+        return new SnapshotWriter(out);
+    }
+
+    /**
+     * Reads framed records as written by {@link #writer(OutputStream)}.
+     *
+     * @return number of records read
+     */
+    public static long read(byte[] records, Handler handler) throws IOException {
+        return read(new DataInputStream(new ByteArrayInputStream(records)), handler, "replicated records");
+    }
+
+    /**
+     * Reads the snapshot and the log segments written after it.
+     */
+    public void replay(Handler handler) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long records = 0;
+        Path snapshot = directory.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            records += replay(snapshot, handler);
+        }
+        for (long number : segments()) {
+            if (number < segmentNumber) {
+                records += replay(segmentPath(number), handler);
+            }
+        }
+        log.info("Replayed {} records from {}", records, directory.toAbsolutePath());
+    }
+
+    /**
+     * @return memory-mapped shorthands of the last snapshot or null if there is none
+     */
+    public ShorthandSnapshot openShorthands() throws IOException {
+        Path file = directory.resolve(SHORTHANDS);
+        return enabled && Files.exists(file) ? ShorthandSnapshot.open(file) : null;
+    }
+
+    /**
+     * Switches to a new segment, lets {@code users} and {@code shorthands} write the complete
+     * state into a new snapshot and removes the segments the snapshot covers. Everything
+     * applied in memory before this call has to be visible to both.
+     */
+    public void snapshot(Consumer<Handler> users, ShorthandSource shorthands) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long covered;
+        synchronized (segmentLock) {
+            covered = segmentNumber;
+            segment.close();
+            openNextSegment();
+        }
+
+        Path shorthandsTmp = directory.resolve(SHORTHANDS + ".tmp");
+        try (ShorthandSnapshot.Writer writer = ShorthandSnapshot.create(shorthandsTmp)) {
+            shorthands.write(writer);
+            writer.finish();
+        }
+        // shorthands first: the old users snapshot plus the segments still cover the new shorthands
+        Files.move(shorthandsTmp, directory.resolve(SHORTHANDS), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        Path tmp = directory.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16)) {
+            SnapshotWriter writer = new SnapshotWriter(out);
+            users.accept(writer);
+            out.flush();
+            channel.force(true);
+            log.info("Snapshot of {} records written", writer.records);
+        }
+        Files.move(tmp, directory.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        for (long number : segments()) {
+            if (number <= covered) {
+                Files.delete(segmentPath(number));
+            }
+        }
+    }
+
+    private CompletableFuture<Void> append(RecordWriter record) {
+        if (!enabled && listener == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return append(frame(record));
+    }
+
+    private CompletableFuture<Void> append(byte[] records) {
+        Consumer<byte[]> listener = this.listener;
+        if (listener != null) {
+            listener.accept(records);
+        }
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Append(records, done));
+        return done;
+    }
+
+    private void writeLoop() {
+        List<Append> pending = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            // no interrupts here, they would close the file channel
+            try {
+                Append first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                pending.add(first);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(pending);
+            try {
+                write(pending);
+                pending.forEach(a -> a.done.complete(null));
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to write {} records to the shorthand log", pending.size(), e);
+                pending.forEach(a -> a.done.completeExceptionally(e));
+            }
+            pending.clear();
+        }
+    }
+
+    private void write(List<Append> pending) throws IOException {
+        synchronized (segmentLock) {
+            batch.clear();
+            for (Append append : pending) {
+                if (append.records.length > batch.remaining()) {
+                    flushBatch();
+                    if (append.records.length > batch.capacity()) {
+                        writeFully(ByteBuffer.wrap(append.records));
+                        continue;
+                    }
+                }
+                batch.put(append.records);
+            }
+            flushBatch();
+            segment.force(false);
+        }
+    }
+
+    private void flushBatch() throws IOException {
+        batch.flip();
+        writeFully(batch);
+        batch.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentNumber++;
+        segment = FileChannel.open(segmentPath(segmentNumber), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private List<Long> segments() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring unknown file {} in the shorthand log", file);
+                }
+            }
+        }
+        return new ArrayList<>(segments.keySet());
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static long replay(Path file, Handler handler) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            return read(in, handler, file.toString());
+        }
+    }
+
+    private static long read(DataInputStream in, Handler handler, String source) throws IOException {
+        long records = 0;
+        byte[] payload;
+        while ((payload = readFrame(in, source)) != null) {
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+            byte type = record.readByte();
+            switch (type) {
+                case USER:
+                    handler.user(readString(record), readString(record));
+                    break;
+                case SHORTHAND:
+                    handler.shorthand(Shorthand.builder()
+                            .owner(readString(record))
+                            .shortUrl(readString(record))
+                            .url(readString(record))
+                            .redirectType(record.readInt())
+                            .build());
+                    break;
+                case HITS:
+                    handler.hits(readString(record), record.readLong());
+                    break;
+                default:
+                    throw new IOException("Unknown record type " + type + " in " + source);
+            }
+            records++;
+        }
+        return records;
+    }
+
+    private static byte[] readFrame(DataInputStream in, String source) throws IOException {
+        try {
+            int length = in.readInt();
+            int crc = in.readInt();
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (crc != crc(payload)) {
+                log.warn("Checksum mismatch in {}, ignoring the rest", source);
+                return null;
+            }
+            return payload;
+        } catch (EOFException e) {
+            // end of file or a record torn by a crash
+            return null;
+        }
+    }
+
+    private static byte[] frame(RecordWriter record) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+            record.write(new DataOutputStream(payload));
+            byte[] bytes = payload.toByteArray();
+            ByteBuffer framed = ByteBuffer.allocate(8 + bytes.length);
+            framed.putInt(bytes.length).putInt(crc(bytes)).put(bytes);
+            return framed.array();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeUser(DataOutputStream out, String username, String password) throws IOException {
+        out.writeByte(USER);
+        writeString(out, username);
+        writeString(out, password);
+    }
+
+    private static void writeShorthand(DataOutputStream out, Shorthand shorthand) throws IOException {
+        out.writeByte(SHORTHAND);
+        writeString(out, shorthand.getOwner());
+        writeString(out, shorthand.getShortUrl());
+        writeString(out, shorthand.getUrl());
+        out.writeInt(shorthand.getRedirectType());
+    }
+
+    private static void writeHits(DataOutputStream out, String shortUrl, long hits) throws IOException {
+        out.writeByte(HITS);
+        writeString(out, shortUrl);
+        out.writeLong(hits);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static class Append {
+        // one or more framed records
+        final byte[] records;
+        final CompletableFuture<Void> done;
+
+        Append(byte[] records, CompletableFuture<Void> done) {
+            this.records = records;
+            this.done = done;
+        }
+    }
+
+    private static class SnapshotWriter implements Handler {
+        private final OutputStream out;
+        private long records;
+
+        SnapshotWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void user(String username, String password) {
+            write(o -> writeUser(o, username, password));
+        }
+
+        @Override
+        public void shorthand(Shorthand shorthand) {
+            write(o -> writeShorthand(o, shorthand));
+        }
+
+        @Override
+        public void hits(String shortUrl, long hits) {
+            write(o -> writeHits(o, shortUrl, hits));
+        }
+
+        private void write(RecordWriter record) {
+            try {
+                out.write(frame(record));
+                records++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
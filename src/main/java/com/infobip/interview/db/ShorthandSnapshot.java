@@ -0,0 +1,434 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only, memory-mapped snapshot of all shorthands, looked up in place without
+ * building objects for links nobody asks for.
+ * <p>
+ * Layout, all numbers big endian:
+ * <pre>
+ * header      magic, version, shorthand count, owner count, table sizes and region offsets
+ * records     [int length][long owner offset][int redirectType][long count]
+ *             [short code length][code][int url length][url], grouped by owner;
+ *             a record never crosses a {@link #CHUNK} boundary, zero length means padding
+ * owners      [long first record][int record count][short name length][name]
+ * code table  open addressing table of record offset + 1, 0 is an empty slot
+ * owner table open addressing table of owner offset + 1, 0 is an empty slot
+ * </pre>
+ */
+public class ShorthandSnapshot {
+
+    private static final int MAGIC = 0x53484e44;
+    private static final int VERSION = 1;
+    private static final int HEADER = 64;
+    private static final int CHUNK = 1 << 30;
+
+    private final ByteBuffer[] records;
+    private final ByteBuffer owners;
+    private final ByteBuffer codeTable;
+    private final ByteBuffer ownerTable;
+    private final long size;
+    private final int ownerCount;
+
+    /**
+     * Receives the owners and shorthands stored in a snapshot.
+     */
+    public interface Visitor {
+        void owner(String owner);
+
+        void shorthand(Shorthand shorthand, long count);
+    }
+
+    private ShorthandSnapshot(ByteBuffer[] records, ByteBuffer owners, ByteBuffer codeTable, ByteBuffer ownerTable,
+                              long size, int ownerCount) {
+        this.records = records;
+        this.owners = owners;
+        this.codeTable = codeTable;
+        this.ownerTable = ownerTable;
+        this.size = size;
+        this.ownerCount = ownerCount;
+    }
+
+    public static ShorthandSnapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a shorthand snapshot: " + file);
+            }
+            long size = header.getLong(8);
+            int ownerCount = header.getInt(16);
+            long recordsLength = header.getLong(24);
+            long ownersOffset = header.getLong(32);
+            long codeTableOffset = header.getLong(40);
+            long ownerTableOffset = header.getLong(48);
+            long end = header.getLong(56);
+
+            ByteBuffer[] records = new ByteBuffer[(int) ((recordsLength + CHUNK - 1) / CHUNK)];
+            for (int i = 0; i < records.length; i++) {
+                long start = (long) i * CHUNK;
+                records[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + start, Math.min(CHUNK, recordsLength - start));
+            }
+            return new ShorthandSnapshot(records,
+                    map(channel, ownersOffset, codeTableOffset),
+                    map(channel, codeTableOffset, ownerTableOffset),
+                    map(channel, ownerTableOffset, end),
+                    size, ownerCount);
+        }
+    }
+
+    public static Writer create(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int ownerCount() {
+        return ownerCount;
+    }
+
+    /**
+     * @return shorthand with the given short url or null
+     */
+    public Shorthand find(String shortUrl) {
+        long record = findRecord(shortUrl);
+        return record < 0 ? null : readShorthand(record);
+    }
+
+    public boolean contains(String shortUrl) {
+        return findRecord(shortUrl) >= 0;
+    }
+
+    /**
+     * @return false if the snapshot has no shorthands of the owner
+     */
+    public boolean visitOwner(String owner, Visitor visitor) {
+        long entry = findOwner(owner);
+        if (entry < 0) {
+            return false;
+        }
+        visitOwnerAt(entry, visitor);
+        return true;
+    }
+
+    public void visitAll(Visitor visitor) {
+        int position = 0;
+        for (int i = 0; i < ownerCount; i++) {
+            visitOwnerAt(position, visitor);
+            position += 14 + owners.getShort(position + 12);
+        }
+    }
+
+    private void visitOwnerAt(long entry, Visitor visitor) {
+        int position = (int) entry;
+        visitor.owner(readString(owners, position + 14, owners.getShort(position + 12)));
+        long record = owners.getLong(position);
+        int count = owners.getInt(position + 8);
+        for (int i = 0; i < count; i++) {
+            record = skipPadding(record);
+            ByteBuffer chunk = chunk(record);
+            int offset = offset(record);
+            visitor.shorthand(readShorthand(record), chunk.getLong(offset + 16));
+            record += chunk.getInt(offset);
+        }
+    }
+
+    public long count(String shortUrl) {
+        long record = findRecord(shortUrl);
+        return record < 0 ? 0 : chunk(record).getLong(offset(record) + 16);
+    }
+
+    private long findRecord(String shortUrl) {
+        byte[] code = shortUrl.getBytes(StandardCharsets.UTF_8);
+        int mask = codeTable.capacity() / 8 - 1;
+        for (int slot = hash(shortUrl) & mask; ; slot = (slot + 1) & mask) {
+            long value = codeTable.getLong(slot * 8);
+            if (value == 0) {
+                return -1;
+            }
+            long record = value - 1;
+            ByteBuffer chunk = chunk(record);
+            int offset = offset(record);
+            if (equalBytes(chunk, offset + 26, chunk.getShort(offset + 24), code)) {
+                return record;
+            }
+        }
+    }
+
+    private long findOwner(String owner) {
+        byte[] name = owner.getBytes(StandardCharsets.UTF_8);
+        int mask = ownerTable.capacity() / 8 - 1;
+        for (int slot = hash(owner) & mask; ; slot = (slot + 1) & mask) {
+            long value = ownerTable.getLong(slot * 8);
+            if (value == 0) {
+                return -1;
+            }
+            int entry = (int) (value - 1);
+            if (equalBytes(owners, entry + 14, owners.getShort(entry + 12), name)) {
+                return entry;
+            }
+        }
+    }
+
+    private Shorthand readShorthand(long record) {
+        ByteBuffer chunk = chunk(record);
+        int offset = offset(record);
+        int ownerEntry = (int) chunk.getLong(offset + 4);
+        short codeLength = chunk.getShort(offset + 24);
+        int urlOffset = offset + 26 + codeLength;
+        return Shorthand.builder()
+                .owner(readString(owners, ownerEntry + 14, owners.getShort(ownerEntry + 12)))
+                .redirectType(chunk.getInt(offset + 12))
+                .shortUrl(readString(chunk, offset + 26, codeLength))
+                .url(readString(chunk, urlOffset + 4, chunk.getInt(urlOffset)))
+                .build();
+    }
+
+    private long skipPadding(long record) {
+        int offset = offset(record);
+        ByteBuffer chunk = chunk(record);
+        if (chunk.capacity() - offset < 4 || chunk.getInt(offset) == 0) {
+            return record - offset + CHUNK;
+        }
+        return record;
+    }
+
+    private ByteBuffer chunk(long record) {
+        return records[(int) (record / CHUNK)];
+    }
+
+    private static int offset(long record) {
+        return (int) (record % CHUNK);
+    }
+
+    private static ByteBuffer map(FileChannel channel, long from, long to) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    }
+
+    private static boolean equalBytes(ByteBuffer buffer, int offset, int length, byte[] bytes) {
+        if (length != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readString(ByteBuffer buffer, int offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int hash(String key) {
+        // murmur3 finalizer over String.hashCode, which is stable between JVMs
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static int tableSize(long entries) {
+        long size = Long.highestOneBit(Math.max(entries * 2, 2) - 1) << 1;
+        if (size * 8 > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Too many entries for a snapshot table: " + entries);
+        }
+        return (int) size;
+    }
+
+    /**
+     * Writes the records sequentially and the owners and tables at the end, owners have
+     * to be written one after another with all their shorthands. The code table is built from
+     * the records read back from the file, nothing is kept on the heap per link.
+     */
+    public static class Writer implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private final ByteArrayOutputStream ownersBytes = new ByteArrayOutputStream();
+        private final DataOutputStream owners = new DataOutputStream(ownersBytes);
+        private long recordsLength;
+        private long size;
+        private int ownerCount;
+        private int[] ownerHashes = new int[64];
+        private long[] ownerOffsets = new long[64];
+        private String owner;
+        private long ownerFirstRecord;
+        private int ownerRecords;
+
+        private Writer(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER);
+        }
+
+        public void owner(String owner) throws IOException {
+            finishOwner();
+            this.owner = owner;
+            ownerFirstRecord = -1;
+            ownerRecords = 0;
+        }
+
+        public void shorthand(Shorthand shorthand, long count) throws IOException {
+            byte[] code = shorthand.getShortUrl().getBytes(StandardCharsets.UTF_8);
+            byte[] url = shorthand.getUrl().getBytes(StandardCharsets.UTF_8);
+            int length = 30 + code.length + url.length;
+            int inChunk = (int) (recordsLength % CHUNK);
+            if (CHUNK - inChunk < length) {
+                pad(CHUNK - inChunk);
+            }
+            if (ownerFirstRecord < 0) {
+                ownerFirstRecord = recordsLength;
+            }
+            ByteBuffer out = buffer;
+            if (length > buffer.capacity()) {
+                out = ByteBuffer.allocate(length);
+            } else if (length > buffer.remaining()) {
+                flush();
+            }
+            // the owner entry is appended at the current end of the owners region
+            out.putInt(length)
+                    .putLong(owners.size())
+                    .putInt(shorthand.getRedirectType())
+                    .putLong(count)
+                    .putShort((short) code.length)
+                    .put(code)
+                    .putInt(url.length)
+                    .put(url);
+            if (out != buffer) {
+                flush();
+                out.flip();
+                writeFully(out);
+            }
+            recordsLength += length;
+            size++;
+            ownerRecords++;
+        }
+
+        /**
+         * Writes the owners, the tables and the header and forces everything to disk.
+         */
+        public void finish() throws IOException {
+            finishOwner();
+            flush();
+
+            long ownersOffset = HEADER + recordsLength;
+            writeFully(ByteBuffer.wrap(ownersBytes.toByteArray()));
+            long codeTableOffset = ownersOffset + owners.size();
+            int codeTableSize = tableSize(size);
+            writeCodeTable(codeTableOffset, codeTableSize);
+            long ownerTableOffset = codeTableOffset + (long) codeTableSize * 8;
+            int ownerTableSize = tableSize(ownerCount);
+            writeTable(ownerTableOffset, ownerTableSize, ownerHashes, ownerOffsets, ownerCount);
+            long end = ownerTableOffset + (long) ownerTableSize * 8;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(size).putInt(ownerCount).putInt(0)
+                    .putLong(recordsLength).putLong(ownersOffset).putLong(codeTableOffset).putLong(ownerTableOffset).putLong(end);
+            header.flip();
+            channel.position(0);
+            writeFully(header);
+            channel.force(true);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void finishOwner() throws IOException {
+            if (owner == null || ownerRecords == 0) {
+                owner = null;
+                return;
+            }
+            if (ownerCount == ownerHashes.length) {
+                ownerHashes = Arrays.copyOf(ownerHashes, ownerHashes.length * 2);
+                ownerOffsets = Arrays.copyOf(ownerOffsets, ownerOffsets.length * 2);
+            }
+            ownerHashes[ownerCount] = hash(owner);
+            ownerOffsets[ownerCount] = owners.size();
+            byte[] name = owner.getBytes(StandardCharsets.UTF_8);
+            owners.writeLong(ownerFirstRecord);
+            owners.writeInt(ownerRecords);
+            owners.writeShort(name.length);
+            owners.write(name);
+            ownerCount++;
+            owner = null;
+        }
+
+        private void writeCodeTable(long offset, int tableSize) throws IOException {
+            // filled in place, a table for millions of links does not have to fit the heap
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) tableSize * 8);
+            int mask = tableSize - 1;
+            for (long chunkStart = 0; chunkStart < recordsLength; chunkStart += CHUNK) {
+                ByteBuffer chunk = map(channel, HEADER + chunkStart, HEADER + Math.min(recordsLength, chunkStart + CHUNK));
+                int record = 0;
+                // the rest of a chunk after a zero length is padding
+                while (chunk.capacity() - record >= 4 && chunk.getInt(record) != 0) {
+                    String code = readString(chunk, record + 26, chunk.getShort(record + 24));
+                    insert(table, mask, hash(code), chunkStart + record);
+                    record += chunk.getInt(record);
+                }
+            }
+            table.force();
+            channel.position(offset + (long) tableSize * 8);
+        }
+
+        private void writeTable(long offset, int tableSize, int[] hashes, long[] offsets, int count) throws IOException {
+            MappedByteBuffer table = channel.map(FileChannel.MapMode.READ_WRITE, offset, (long) tableSize * 8);
+            int mask = tableSize - 1;
+            for (int i = 0; i < count; i++) {
+                insert(table, mask, hashes[i], offsets[i]);
+            }
+            table.force();
+            channel.position(offset + (long) tableSize * 8);
+        }
+
+        private static void insert(ByteBuffer table, int mask, int hash, long offset) {
+            int slot = hash & mask;
+            while (table.getLong(slot * 8) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table.putLong(slot * 8, offset + 1);
+        }
+
+        private void pad(int length) throws IOException {
+            flush();
+            writeFully(ByteBuffer.allocate(length));
+            recordsLength += length;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            writeFully(buffer);
+            buffer.clear();
+        }
+
+        private void writeFully(ByteBuffer out) throws IOException {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+}
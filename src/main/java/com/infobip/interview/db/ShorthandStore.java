@@ -0,0 +1,31 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+
+import java.util.Collection;
+
+/**
+ * Shorthands indexed by short url, for redirects, and by owner and url, for duplicates and stats.
+ * Implementations are safe for concurrent use.
+ */
+public interface ShorthandStore {
+
+    /**
+     * Stores the shorthand unless its owner already has the url or the short url is taken.
+     *
+     * @return the given shorthand if it was stored, the owner's existing one for the url,
+     * or null if the short url is taken and nothing was stored
+     */
+    Shorthand insert(Shorthand shorthand);
+
+    Shorthand get(String shortUrl);
+
+    Shorthand get(String owner, String url);
+
+    /**
+     * @return the owner's shorthands, empty if there are none
+     */
+    Collection<Shorthand> getByOwner(String owner);
+
+    long size();
+}
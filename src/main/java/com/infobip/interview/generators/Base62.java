@@ -0,0 +1,59 @@
+package com.infobip.interview.generators;
+
+public final class Base62 {
+
+    static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private Base62() {
+    }
+
+    /**
+     * @param minLength result is left padded with '0' up to this length
+     */
+    public static String encode(long value, int minLength) {
+        if (value < 0) {
+            throw new IllegalArgumentException("negative value " + value);
+        }
+        char[] buffer = new char[Math.max(11, minLength)];
+        int position = buffer.length;
+        do {
+            buffer[--position] = ALPHABET[(int) (value % ALPHABET.length)];
+            value /= ALPHABET.length;
+        } while (value > 0);
+        while (buffer.length - position < minLength) {
+            buffer[--position] = '0';
+        }
+        return new String(buffer, position, buffer.length - position);
+    }
+
+    /**
+     * @return value of the code or -1 if it is not Base62 or does not fit a long
+     */
+    public static long decode(String code) {
+        if (code.isEmpty()) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < code.length(); i++) {
+            int digit = digit(code.charAt(i));
+            if (digit < 0 || value > (Long.MAX_VALUE - digit) / ALPHABET.length) {
+                return -1;
+            }
+            value = value * ALPHABET.length + digit;
+        }
+        return value;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 36;
+        }
+        return -1;
+    }
+}
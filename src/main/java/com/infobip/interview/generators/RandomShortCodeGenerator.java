@@ -0,0 +1,26 @@
+package com.infobip.interview.generators;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random alphanumeric codes of fixed length, drawn from the thread local random
+ * so request threads do not contend on a shared generator.
+ */
+public class RandomShortCodeGenerator implements ShortCodeGenerator {
+
+    private final int length;
+
+    public RandomShortCodeGenerator(int length) {
+        this.length = length;
+    }
+
+    @Override
+    public String next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] code = new char[length];
+        for (int i = 0; i < length; i++) {
+            code[i] = Base62.ALPHABET[random.nextInt(Base62.ALPHABET.length)];
+        }
+        return new String(code);
+    }
+}
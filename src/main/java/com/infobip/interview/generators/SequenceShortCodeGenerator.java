@@ -0,0 +1,58 @@
+package com.infobip.interview.generators;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base62 encoded sequence partitioned between nodes: node {@code nodeId} of {@code nodes}
+ * issues only values congruent to nodeId, so nodes never produce the same code.
+ * Every thread takes a block of {@code blockSize} values from the node sequence and
+ * issues codes from it without touching shared state.
+ * <p>
+ * The sequence itself is not stored: after a restart {@link #skipPast(String)} has to be called
+ * with the stored codes, otherwise the sequence starts over and every code is taken.
+ */
+public class SequenceShortCodeGenerator implements ShortCodeGenerator {
+
+    private final int length;
+    private final int nodeId;
+    private final int nodes;
+    private final int blockSize;
+    // first value of the node sequence not handed out in a block yet
+    private final AtomicLong next;
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[]{0, 0});
+
+    public SequenceShortCodeGenerator(int length, int nodeId, int nodes, int blockSize, long start) {
+        if (nodeId < 0 || nodeId >= nodes) {
+            throw new IllegalArgumentException("nodeId must be in [0, " + nodes + ")");
+        }
+        this.length = length;
+        this.nodeId = nodeId;
+        this.nodes = nodes;
+        this.blockSize = blockSize;
+        this.next = new AtomicLong(start);
+    }
+
+    @Override
+    public String next() {
+        // block[0] - next value, block[1] - end of the block
+        long[] range = block.get();
+        if (range[0] == range[1]) {
+            long start = next.getAndAdd(blockSize);
+            range[0] = start;
+            range[1] = start + blockSize;
+        }
+        long sequence = range[0]++;
+        return Base62.encode(sequence * nodes + nodeId, length);
+    }
+
+    /**
+     * Moves the sequence past a code issued before, by this or any other node. Codes which are
+     * not Base62 or do not fit a long are ignored.
+     */
+    public void skipPast(String code) {
+        long value = Base62.decode(code);
+        if (value >= 0) {
+            next.accumulateAndGet(value / nodes + 1, Math::max);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.infobip.interview.generators;
+
+/**
+ * Source of short urls. Uniqueness is checked by the caller against the dao index,
+ * a generator only has to make collisions rare.
+ */
+public interface ShortCodeGenerator {
+
+    String next();
+}
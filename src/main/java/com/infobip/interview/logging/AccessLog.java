@@ -0,0 +1,207 @@
+package com.infobip.interview.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Access log of the requests as JSON lines, one object per request. A request thread only
+ * queues the entry, a writer thread formats the queued entries in batches and writes each batch
+ * through a buffered writer with a single flush. Entries of successful requests are sampled
+ * with {@code shorthand.access-log.sample-rate}, failed ones are always kept. When the queue is
+ * full entries are dropped rather than making the request wait.
+ * Queue depth and counts are exported over JMX.
+ */
+@Slf4j
+@Component
+@ManagedResource(objectName = "com.infobip.interview:type=AccessLog")
+public class AccessLog {
+
+    private static final int BATCH_SIZE = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final boolean enabled;
+    private final Path file;
+    private final double sampleRate;
+    private final BlockingQueue<Entry> queue;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private Thread writer;
+    private volatile boolean running;
+
+    public AccessLog(@Value("${shorthand.access-log.enabled:true}") boolean enabled,
+                     @Value("${shorthand.access-log.file:logs/access.log}") String file,
+                     @Value("${shorthand.access-log.sample-rate:1.0}") double sampleRate,
+                     @Value("${shorthand.access-log.queue-size:65536}") int queueSize) {
+        this.enabled = enabled;
+        this.file = Paths.get(file);
+        this.sampleRate = sampleRate;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        running = true;
+        writer = new Thread(() -> writeLoop(out), "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Writing the access log to {}, sampling {} of the successful requests", file.toAbsolutePath(), sampleRate);
+    }
+
+    /**
+     * Writes the entries still queued.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join();
+        }
+    }
+
+    /**
+     * @return whether an entry of a request of the given status is to be logged, decided before
+     * the entry is built
+     */
+    public boolean isLogged(int status) {
+        return enabled && (status >= 400 || sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    public void log(Entry entry) {
+        if (!queue.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop(Writer out) {
+        List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+        StringBuilder line = new StringBuilder(256);
+        try (Writer buffered = new BufferedWriter(out, BUFFER_SIZE)) {
+            while (running || !queue.isEmpty()) {
+                Entry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                for (Entry entry : batch) {
+                    line.setLength(0);
+                    entry.appendJson(line);
+                    buffered.append(line).append('\n');
+                }
+                buffered.flush();
+                written.add(batch.size());
+                batch.clear();
+            }
+        } catch (IOException e) {
+            log.error("Access log writer failed, no more requests are logged", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @ManagedAttribute
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @ManagedAttribute
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    @ManagedAttribute
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    @ManagedAttribute
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * One request, formatted on the writer thread.
+     */
+    public static class Entry {
+        private final long timeMillis;
+        private final String method;
+        private final String path;
+        private final String endpoint;
+        private final int status;
+        private final long durationNanos;
+        private final String principal;
+        private final String detail;
+
+        public Entry(long timeMillis, String method, String path, String endpoint, int status, long durationNanos,
+                     String principal, String detail) {
+            this.timeMillis = timeMillis;
+            this.method = method;
+            this.path = path;
+            this.endpoint = endpoint;
+            this.status = status;
+            this.durationNanos = durationNanos;
+            this.principal = principal;
+            this.detail = detail;
+        }
+
+        void appendJson(StringBuilder out) {
+            out.append("{\"time\":\"").append(Instant.ofEpochMilli(timeMillis)).append('"');
+            field(out, "method", method);
+            field(out, "path", path);
+            field(out, "endpoint", endpoint);
+            out.append(",\"status\":").append(status);
+            out.append(",\"durationMicros\":").append(durationNanos / 1000);
+            field(out, "principal", principal);
+            field(out, "detail", detail);
+            out.append('}');
+        }
+
+        private static void field(StringBuilder out, String name, String value) {
+            if (value == null) {
+                return;
+            }
+            out.append(",\"").append(name).append("\":\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+    }
+}
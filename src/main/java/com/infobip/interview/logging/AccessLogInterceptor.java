@@ -0,0 +1,62 @@
+package com.infobip.interview.logging;
+
+import com.infobip.interview.metrics.MetricsInterceptor;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.RequestDispatcher;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Passes every completed request to the {@link AccessLog}, timed from the start recorded by the
+ * {@link MetricsInterceptor}. Controllers add what is worth knowing about a request, like the
+ * created short url, with {@link #detail(HttpServletRequest, String)}.
+ */
+public class AccessLogInterceptor extends HandlerInterceptorAdapter {
+
+    private static final String DETAIL = AccessLogInterceptor.class.getName() + ".detail";
+    private static final String PRINCIPAL = AccessLogInterceptor.class.getName() + ".principal";
+
+    private final AccessLog accessLog;
+
+    public AccessLogInterceptor(AccessLog accessLog) {
+        this.accessLog = accessLog;
+    }
+
+    public static void detail(HttpServletRequest request, String detail) {
+        request.setAttribute(DETAIL, detail);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // the authenticated user is not known on the dispatch completing an asynchronous request
+        if (request.getAttribute(PRINCIPAL) == null) {
+            String principal = request.getRemoteUser();
+            if (principal != null) {
+                request.setAttribute(PRINCIPAL, principal);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        int status = ex != null ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+        if (!accessLog.isLogged(status)) {
+            return;
+        }
+        Object start = request.getAttribute(MetricsInterceptor.REQUEST_START);
+        // requests failing in the security filters are logged from the error dispatch
+        Object errorPath = request.getAttribute(RequestDispatcher.ERROR_REQUEST_URI);
+        accessLog.log(new AccessLog.Entry(
+                System.currentTimeMillis(),
+                request.getMethod(),
+                errorPath != null ? (String) errorPath : request.getRequestURI(),
+                handler instanceof HandlerMethod ? ((HandlerMethod) handler).getMethod().getName() : null,
+                status,
+                start instanceof Long ? System.nanoTime() - (Long) start : 0,
+                (String) request.getAttribute(PRINCIPAL),
+                (String) request.getAttribute(DETAIL)));
+    }
+}
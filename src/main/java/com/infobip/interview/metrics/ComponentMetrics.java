@@ -0,0 +1,78 @@
+package com.infobip.interview.metrics;
+
+import com.infobip.interview.cache.RedirectCache;
+import com.infobip.interview.clicks.ClickPipeline;
+import com.infobip.interview.db.HitCounters;
+import com.infobip.interview.db.JdbcShorthandDao;
+import com.infobip.interview.db.OffHeapShorthandStore;
+import com.infobip.interview.db.ShorthandDao;
+import com.infobip.interview.db.ShorthandStore;
+import com.infobip.interview.security.CachingAuthenticationProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Registers the statistics the caches, the click pipeline and the stores already keep as metrics,
+ * read when the metrics are written.
+ */
+@Component
+public class ComponentMetrics {
+
+    private final MetricsRegistry registry;
+    private final RedirectCache cache;
+    private final ClickPipeline clicks;
+    private final ShorthandStore store;
+    private final ShorthandDao dao;
+    private final HitCounters counters;
+    private final CachingAuthenticationProvider credentials;
+
+    @Autowired
+    public ComponentMetrics(MetricsRegistry registry, RedirectCache cache, ClickPipeline clicks, ObjectProvider<ShorthandStore> store,
+                            ShorthandDao dao, HitCounters counters, CachingAuthenticationProvider credentials) {
+        this.registry = registry;
+        this.cache = cache;
+        this.clicks = clicks;
+        // none with the jdbc store
+        this.store = store.getIfAvailable();
+        this.dao = dao;
+        this.counters = counters;
+        this.credentials = credentials;
+    }
+
+    @PostConstruct
+    public void register() {
+        registry.gauge("redirect_cache_size", "Shorthands in the redirect cache", cache::getSize);
+        registry.counter("redirect_cache_hits_total", "Redirect cache hits", cache::getHitCount);
+        registry.counter("redirect_cache_misses_total", "Redirect cache misses", cache::getMissCount);
+        registry.counter("redirect_cache_evictions_total", "Redirect cache evictions", cache::getEvictionCount);
+        registry.gauge("redirect_cache_hit_ratio", "Share of redirect cache lookups that were hits", cache::getHitRatio);
+
+        registry.gauge("click_queue_size", "Clicks waiting to be counted", clicks::getQueueSize);
+        registry.gauge("click_queue_capacity", "Capacity of the click queue", clicks::getQueueCapacity);
+        registry.counter("clicks_processed_total", "Clicks counted", clicks::getProcessedCount);
+        registry.counter("clicks_dropped_total", "Clicks dropped on a full queue", clicks::getDroppedCount);
+        registry.counter("clicks_blocked_total", "Redirects that waited for room in the click queue", clicks::getBlockedCount);
+        registry.counter("click_queue_contended_total", "Click queue slots lost to another producer and retried", clicks::getContendedCount);
+
+        registry.gauge("credential_cache_size", "Verified credentials remembered", credentials::size);
+        registry.counter("credential_cache_hits_total", "Authentications answered from the credential cache", credentials::hitCount);
+        registry.counter("credential_cache_misses_total", "Authentications that checked the password hash", credentials::missCount);
+
+        registry.gauge("accounts", "Registered accounts", dao::userCount);
+        if (store != null) {
+            registry.gauge("shorthand_store_size", "Shorthands in the store, not counting those still only in the snapshot", store::size);
+            registry.gauge("hit_counters_size", "Short urls with a hit counter", counters::size);
+        }
+        if (dao instanceof JdbcShorthandDao) {
+            registry.gauge("jdbc_unflushed_clicks", "Short urls with clicks not yet written to the database",
+                    ((JdbcShorthandDao) dao)::unflushedCount);
+        }
+        if (store instanceof OffHeapShorthandStore) {
+            OffHeapShorthandStore offHeap = (OffHeapShorthandStore) store;
+            registry.gauge("shorthand_store_off_heap_bytes", "Direct memory of the off-heap store", offHeap::offHeapBytes);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.infobip.interview.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies counted into fixed buckets from 100 microseconds to 10 seconds, the layout of a
+ * Prometheus histogram. Recording is a few comparisons and two LongAdder increments.
+ */
+public class LatencyHistogram {
+
+    // bucket upper bounds, nanoseconds
+    static final long[] BOUNDS = {
+            100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L,
+            10_000_000L, 25_000_000L, 50_000_000L,
+            100_000_000L, 250_000_000L, 500_000_000L,
+            1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder sum = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sum.add(nanos);
+    }
+
+    /**
+     * @return counts of the buckets, the last one for everything above the largest bound
+     */
+    public long[] buckets() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long sumNanos() {
+        return sum.sum();
+    }
+}
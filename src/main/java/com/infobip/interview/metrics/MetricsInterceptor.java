@@ -0,0 +1,76 @@
+package com.infobip.interview.metrics;
+
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Times every request to a controller method and counts its responses by status class, labelled
+ * with the name of the method. Requests are timed from their start recorded by the
+ * {@link RequestStartFilter}, the security filters included. The metrics of a method are looked
+ * up in the registry on its first request only.
+ */
+public class MetricsInterceptor extends HandlerInterceptorAdapter {
+
+    // System.nanoTime() at the start of the request, also read by the access log
+    public static final String REQUEST_START = MetricsInterceptor.class.getName() + ".start";
+    public static final String LATENCY_HELP = "Latency of the requests by controller method, authentication included";
+
+    private final MetricsRegistry registry;
+    private final ConcurrentMap<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public MetricsInterceptor(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // set by the RequestStartFilter unless the request skipped it; asynchronous requests and
+        // errors are dispatched again, timed from the first dispatch
+        if (request.getAttribute(REQUEST_START) == null) {
+            request.setAttribute(REQUEST_START, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object start = request.getAttribute(REQUEST_START);
+        if (!(start instanceof Long) || !(handler instanceof HandlerMethod)) {
+            return;
+        }
+        Endpoint endpoint = endpoint(((HandlerMethod) handler).getMethod());
+        endpoint.latency.record(System.nanoTime() - (Long) start);
+        int status = ex != null ? 5 : response.getStatus() / 100;
+        endpoint.responses[Math.max(1, Math.min(status, 5)) - 1].increment();
+    }
+
+    private Endpoint endpoint(Method method) {
+        // get first, computeIfAbsent locks the bin even if the key is present
+        Endpoint endpoint = endpoints.get(method);
+        if (endpoint == null) {
+            endpoint = endpoints.computeIfAbsent(method, m -> new Endpoint(registry, m.getName()));
+        }
+        return endpoint;
+    }
+
+    private static class Endpoint {
+        final LatencyHistogram latency;
+        // 1xx to 5xx
+        final LongAdder[] responses = new LongAdder[5];
+
+        Endpoint(MetricsRegistry registry, String name) {
+            latency = registry.histogram("http_request_duration_seconds", LATENCY_HELP, "endpoint", name);
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = registry.counter("http_responses_total",
+                        "Responses by controller method and status class", "endpoint", name, "status", (i + 1) + "xx");
+            }
+        }
+    }
+}
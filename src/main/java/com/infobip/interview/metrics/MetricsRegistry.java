@@ -0,0 +1,186 @@
+package com.infobip.interview.metrics;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Counters, gauges and latency histograms of the application, written in the Prometheus text
+ * format and exported over JMX.
+ * <p>
+ * Metrics are looked up once, when they are registered, and the caller keeps the returned
+ * LongAdder or {@link LatencyHistogram}, so recording never goes through the registry. Gauges
+ * are read only when the metrics are written.
+ */
+@Component
+@ManagedResource(objectName = "com.infobip.interview:type=Metrics")
+public class MetricsRegistry {
+
+    private static final String[] BUCKET_BOUNDS = new String[LatencyHistogram.BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            BUCKET_BOUNDS[i] = BigDecimal.valueOf(LatencyHistogram.BOUNDS[i], 9).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private final ConcurrentMap<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * @param labels label names and values, alternating
+     */
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, "counter").series(labels, LongAdder::new);
+    }
+
+    /**
+     * Counter kept elsewhere, read when the metrics are written.
+     */
+    public void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "counter").series(labels, () -> value);
+    }
+
+    public LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, "histogram").series(labels, LatencyHistogram::new);
+    }
+
+    public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, "gauge").series(labels, () -> value);
+    }
+
+    public void writePrometheus(Appendable out) throws IOException {
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                Object metric = series.getValue();
+                if (metric instanceof LongAdder) {
+                    sample(out, family.name, labels, null, ((LongAdder) metric).sum());
+                } else if (metric instanceof DoubleSupplier) {
+                    sample(out, family.name, labels, null, ((DoubleSupplier) metric).getAsDouble());
+                } else {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    long[] buckets = histogram.buckets();
+                    long count = 0;
+                    for (int i = 0; i < buckets.length; i++) {
+                        count += buckets[i];
+                        String le = i < BUCKET_BOUNDS.length ? BUCKET_BOUNDS[i] : "+Inf";
+                        sample(out, family.name + "_bucket", labels, "le=\"" + le + '"', count);
+                    }
+                    sample(out, family.name + "_sum", labels, null, histogram.sumNanos() / 1e9);
+                    sample(out, family.name + "_count", labels, null, count);
+                }
+            }
+        }
+    }
+
+    @ManagedOperation(description = "All metrics in the Prometheus text format")
+    public String prometheus() {
+        StringBuilder out = new StringBuilder();
+        try {
+            writePrometheus(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return counters and gauges by name and labels, histograms as their count and sum in seconds
+     */
+    @ManagedAttribute
+    public SortedMap<String, Double> getValues() {
+        SortedMap<String, Double> values = new TreeMap<>();
+        for (Family family : families.values()) {
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey().isEmpty() ? "" : '{' + series.getKey() + '}';
+                Object metric = series.getValue();
+                if (metric instanceof LongAdder) {
+                    values.put(family.name + labels, (double) ((LongAdder) metric).sum());
+                } else if (metric instanceof DoubleSupplier) {
+                    values.put(family.name + labels, ((DoubleSupplier) metric).getAsDouble());
+                } else {
+                    LatencyHistogram histogram = (LatencyHistogram) metric;
+                    long count = 0;
+                    for (long bucket : histogram.buckets()) {
+                        count += bucket;
+                    }
+                    values.put(family.name + "_count" + labels, (double) count);
+                    values.put(family.name + "_sum" + labels, histogram.sumNanos() / 1e9);
+                }
+            }
+        }
+        return values;
+    }
+
+    private Family family(String name, String help, String type) {
+        Family family = families.computeIfAbsent(name, k -> new Family(name, help, type));
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + family.type + ", not a " + type);
+        }
+        return family;
+    }
+
+    private static void sample(Appendable out, String name, String labels, String extraLabel, double value) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty() || extraLabel != null) {
+            out.append('{').append(labels);
+            if (extraLabel != null) {
+                out.append(labels.isEmpty() ? "" : ",").append(extraLabel);
+            }
+            out.append('}');
+        }
+        out.append(' ');
+        if (value == (long) value) {
+            out.append(Long.toString((long) value));
+        } else {
+            out.append(Double.toString(value));
+        }
+        out.append('\n');
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name and value pairs");
+        }
+        StringBuilder rendered = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            rendered.append(i == 0 ? "" : ",").append(labels[i]).append("=\"")
+                    .append(labels[i + 1].replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                    .append('"');
+        }
+        return rendered.toString();
+    }
+
+    private static class Family {
+        final String name;
+        final String help;
+        final String type;
+        // rendered labels -> LongAdder, LatencyHistogram or DoubleSupplier, sorted by labels
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String name, String help, String type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+
+        Object series(String[] labels, Supplier<Object> metric) {
+            return series.computeIfAbsent(labels(labels), k -> metric.get());
+        }
+    }
+}
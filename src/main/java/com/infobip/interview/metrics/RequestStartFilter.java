@@ -0,0 +1,23 @@
+package com.infobip.interview.metrics;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Records the start of a request ahead of every other filter, so the latency metrics and the
+ * access log include the authentication by the security filters and not only the handler.
+ */
+public class RequestStartFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        request.setAttribute(MetricsInterceptor.REQUEST_START, System.nanoTime());
+        chain.doFilter(request, response);
+    }
+}
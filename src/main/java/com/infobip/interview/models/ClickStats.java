@@ -0,0 +1,15 @@
+package com.infobip.interview.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class ClickStats {
+    private String url;
+    private String resolution;
+    // start of the first bucket, epoch millis
+    private long from;
+    private long bucketMillis;
+    private long[] counts;
+}
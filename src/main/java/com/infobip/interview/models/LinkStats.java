@@ -0,0 +1,12 @@
+package com.infobip.interview.models;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class LinkStats {
+    private String url;
+    private String shortUrl;
+    private long count;
+}
@@ -0,0 +1,86 @@
+package com.infobip.interview.models;
+
+import lombok.Getter;
+
+import java.net.IDN;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A shorthand prepared for redirecting, its Location header is computed once per link.
+ */
+@Getter
+public class Redirect {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final int status;
+    private final String url;
+    // ascii only, as headers are written byte per char
+    private final String location;
+
+    private Redirect(int status, String url, String location) {
+        this.status = status;
+        this.url = url;
+        this.location = location;
+    }
+
+    public static Redirect of(Shorthand shorthand) {
+        return new Redirect(shorthand.getRedirectType(), shorthand.getUrl(), location(shorthand.getUrl()));
+    }
+
+    /**
+     * @return the url with an internationalized host in punycode and any other non-ascii
+     * characters percent-encoded as UTF-8, the url itself if it is ascii already
+     */
+    static String location(String url) {
+        if (isAscii(url)) {
+            return url;
+        }
+        StringBuilder location = new StringBuilder(url.length() * 2);
+        int hostStart = url.indexOf("://") + 3;
+        if (hostStart < 3) {
+            percentEncode(location, url, 0, url.length());
+            return location.toString();
+        }
+        int authorityEnd = hostStart;
+        while (authorityEnd < url.length() && "/?#".indexOf(url.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        hostStart = Math.max(hostStart, url.lastIndexOf('@', authorityEnd - 1) + 1);
+        int hostEnd = url.lastIndexOf(':', authorityEnd - 1);
+        if (hostEnd < hostStart) {
+            hostEnd = authorityEnd;
+        }
+        percentEncode(location, url, 0, hostStart);
+        try {
+            location.append(IDN.toASCII(url.substring(hostStart, hostEnd)));
+        } catch (IllegalArgumentException e) {
+            percentEncode(location, url, hostStart, hostEnd);
+        }
+        percentEncode(location, url, hostEnd, url.length());
+        return location.toString();
+    }
+
+    private static boolean isAscii(String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void percentEncode(StringBuilder out, String string, int from, int to) {
+        for (int i = from; i < to; ) {
+            int codePoint = string.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint < 0x80) {
+                out.append((char) codePoint);
+                continue;
+            }
+            for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                out.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+            }
+        }
+    }
+}
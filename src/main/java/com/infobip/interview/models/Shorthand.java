@@ -15,5 +15,5 @@ public class Shorthand {
     private String url;
     private String shortUrl;
     private Integer redirectType;
-    private Integer count;
+    private String owner;
 }
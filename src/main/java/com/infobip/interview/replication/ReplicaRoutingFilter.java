@@ -0,0 +1,40 @@
+package com.infobip.interview.replication;
+
+import com.infobip.interview.cluster.ClusterNode;
+import com.infobip.interview.cluster.HttpProxy;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Lets a replica serve the reads it can answer from its own copy, the redirects first of all,
+ * and proxies everything else to the leader: accounts and shorthands are only created there,
+ * and statistics are read there as only the leader has the clicks of all replicas up to date.
+ */
+public class ReplicaRoutingFilter extends OncePerRequestFilter {
+
+    private final ClusterNode leader;
+    private final HttpProxy proxy;
+
+    public ReplicaRoutingFilter(ClusterNode leader, HttpProxy proxy) {
+        this.leader = leader;
+        this.proxy = proxy;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean read = HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod());
+        if (read && !path.startsWith("/statistic/")) {
+            chain.doFilter(request, response);
+        } else {
+            proxy.proxy(leader, request, null, response);
+        }
+    }
+}
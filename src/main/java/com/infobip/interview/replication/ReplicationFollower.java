@@ -0,0 +1,208 @@
+package com.infobip.interview.replication;
+
+import com.infobip.interview.clicks.ClickPipeline;
+import com.infobip.interview.db.InMemoryShorthandDao;
+import com.infobip.interview.db.ShorthandLog;
+import com.infobip.interview.metrics.MetricsRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps this node's accounts and shorthands a copy of the leader's, see {@link ReplicationLeader}.
+ * The copy is kept in memory only and filled with a dump from the leader on start; after a lost
+ * connection the replica reconnects and continues from its position.
+ * <p>
+ * Clicks counted here are reported to the leader periodically as increments and come back as
+ * totals with the clicks of the other replicas. Clicks of a report which failed are kept for
+ * the next one.
+ */
+@Slf4j
+public class ReplicationFollower {
+
+    private final ClickPipeline clicks;
+    private final MetricsRegistry metrics;
+    private final InetSocketAddress leader;
+    private final int connectTimeoutMillis;
+    private final long heartbeatMillis;
+    private final long clicksIntervalMillis;
+    private final ShorthandLog.Handler applier;
+    // clicks not yet reported to the leader, guarded by itself
+    private Map<String, Long> unreported = new HashMap<>();
+    private volatile long epoch;
+    private volatile long position;
+    private volatile Socket socket;
+    private volatile DataOutputStream out;
+    private volatile boolean running;
+    private Thread receiver;
+    private Thread reporter;
+
+    public ReplicationFollower(InMemoryShorthandDao dao, ClickPipeline clicks, MetricsRegistry metrics, String leaderHost, int leaderPort,
+                               int connectTimeoutMillis, long heartbeatMillis, long clicksIntervalMillis) {
+        this.clicks = clicks;
+        this.metrics = metrics;
+        this.leader = new InetSocketAddress(leaderHost, leaderPort);
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.clicksIntervalMillis = clicksIntervalMillis;
+        this.applier = dao.applier();
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        clicks.setListener(this::count);
+        receiver = new Thread(this::receive, "replication-follower");
+        receiver.setDaemon(true);
+        receiver.start();
+        reporter = new Thread(this::report, "replication-clicks");
+        reporter.setDaemon(true);
+        reporter.start();
+        metrics.gauge("replication_position", "Changes of the leader applied", this::getPosition);
+        metrics.gauge("replication_connected", "1 if connected to the leader", () -> isConnected() ? 1 : 0);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        clicks.setListener(null);
+        // the last clicks go out before the connection is closed
+        reporter.interrupt();
+        reporter.join();
+        receiver.interrupt();
+        Socket socket = this.socket;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Failed to close the connection to the leader", e);
+            }
+        }
+        receiver.join();
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public boolean isConnected() {
+        return out != null;
+    }
+
+    private void count(Map<String, Long> batch) {
+        synchronized (this) {
+            batch.forEach((shortUrl, count) -> unreported.merge(shortUrl, count, Long::sum));
+        }
+    }
+
+    private void receive() {
+        boolean warned = false;
+        while (running) {
+            try (Socket socket = new Socket()) {
+                this.socket = socket;
+                socket.connect(leader, connectTimeoutMillis);
+                socket.setTcpNoDelay(true);
+                // the leader sends a heartbeat when there is nothing else
+                socket.setSoTimeout((int) (heartbeatMillis * 3));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeLong(epoch);
+                out.writeLong(position);
+                out.flush();
+                warned = false;
+                follow(in, out);
+            } catch (IOException e) {
+                if (running && !warned) {
+                    log.warn("Replication leader {} unavailable: {}, retrying", leader, e.toString());
+                    warned = true;
+                }
+            } finally {
+                this.out = null;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(heartbeatMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void follow(DataInputStream in, DataOutputStream out) throws IOException {
+        while (running) {
+            ReplicationProtocol.Message message = ReplicationProtocol.read(in);
+            switch (message.type) {
+                case ReplicationProtocol.DUMP:
+                    ShorthandLog.read(message.payload, applier);
+                    break;
+                case ReplicationProtocol.SYNCED:
+                    DataInputStream synced = new DataInputStream(new ByteArrayInputStream(message.payload));
+                    epoch = synced.readLong();
+                    position = synced.readLong();
+                    this.out = out;
+                    log.info("Replicating from {} at {}", leader, position);
+                    break;
+                case ReplicationProtocol.CHANGE:
+                    ShorthandLog.read(message.payload, applier);
+                    position++;
+                    break;
+                case ReplicationProtocol.HEARTBEAT:
+                    break;
+                default:
+                    throw new IOException("Unexpected replication message " + message.type);
+            }
+        }
+    }
+
+    private void report() {
+        while (running) {
+            try {
+                Thread.sleep(clicksIntervalMillis);
+            } catch (InterruptedException e) {
+                // report what is left
+            }
+            Map<String, Long> report;
+            synchronized (this) {
+                if (unreported.isEmpty()) {
+                    continue;
+                }
+                report = unreported;
+                unreported = new HashMap<>();
+            }
+            if (!send(report)) {
+                count(report);
+            }
+        }
+    }
+
+    private boolean send(Map<String, Long> report) {
+        DataOutputStream out = this.out;
+        if (out == null) {
+            return false;
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream(report.size() * 32);
+        ShorthandLog.Handler writer = ShorthandLog.writer(records);
+        report.forEach(writer::hits);
+        try {
+            ReplicationProtocol.write(out, ReplicationProtocol.CLICKS, records.toByteArray());
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            log.warn("Failed to report {} clicked short urls to the leader: {}", report.size(), e.toString());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.infobip.interview.replication;
+
+import com.infobip.interview.db.ClickAnalytics;
+import com.infobip.interview.db.InMemoryShorthandDao;
+import com.infobip.interview.db.ShorthandLog;
+import com.infobip.interview.metrics.MetricsRegistry;
+import com.infobip.interview.models.Shorthand;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Streams the changes of this node to its replicas over TCP and counts the clicks they report.
+ * <p>
+ * Every append to the {@link ShorthandLog} is a change. Changes are numbered in the order they
+ * are published and the last {@code backlog} of them are kept in a ring. A replica connecting
+ * with this leader's epoch and a position still in the ring gets the changes from there,
+ * any other replica first gets a dump of the complete state. The position is fixed before the
+ * dump is taken, so the dump may contain changes sent again after it; replicas apply records
+ * idempotently like the recovery does. A replica falling more than the ring behind is
+ * disconnected and gets a dump when it reconnects.
+ * <p>
+ * Clicks reported by replicas are added to the hits of the dao and logged, so their totals
+ * reach all replicas as changes. They are also added to the click analytics at the time they
+ * arrive, which is up to a report interval after they happened. Replication needs one of the
+ * in-memory stores.
+ */
+@Slf4j
+public class ReplicationLeader {
+
+    private static final int DUMP_CHUNK_SIZE = 1 << 16;
+
+    private final InMemoryShorthandDao dao;
+    private final ClickAnalytics analytics;
+    private final ShorthandLog shorthandLog;
+    private final MetricsRegistry metrics;
+    private final SocketAddress address;
+    private final long heartbeatMillis;
+    // a restarted leader numbers its changes anew
+    private final long epoch = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    private final byte[][] changes;
+    private final Set<Session> sessions = new CopyOnWriteArraySet<>();
+    // number of the next change, guarded by changes
+    private long next;
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ReplicationLeader(InMemoryShorthandDao dao, ClickAnalytics analytics, ShorthandLog shorthandLog,
+                             MetricsRegistry metrics, String bindAddress, int port, int backlog, long heartbeatMillis) {
+        this.dao = dao;
+        this.analytics = analytics;
+        this.shorthandLog = shorthandLog;
+        this.metrics = metrics;
+        this.address = new InetSocketAddress(bindAddress, port);
+        this.changes = new byte[backlog][];
+        this.heartbeatMillis = heartbeatMillis;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(address);
+        running = true;
+        shorthandLog.setListener(this::publish);
+        Thread acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        metrics.gauge("replication_replicas", "Replicas connected to this leader", this::replicaCount);
+        metrics.gauge("replication_position", "Changes published to replicas", this::position);
+        log.info("Replication leader listening on {}", address);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        running = false;
+        shorthandLog.setListener(null);
+        serverSocket.close();
+        sessions.forEach(Session::close);
+        synchronized (changes) {
+            changes.notifyAll();
+        }
+    }
+
+    public long position() {
+        synchronized (changes) {
+            return next;
+        }
+    }
+
+    public int replicaCount() {
+        return sessions.size();
+    }
+
+    private void publish(byte[] records) {
+        synchronized (changes) {
+            changes[(int) (next % changes.length)] = records;
+            next++;
+            changes.notifyAll();
+        }
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Session session = new Session(socket);
+                sessions.add(session);
+                Thread sender = new Thread(session::send, "replication-sender-" + socket.getRemoteSocketAddress());
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Failed to accept a replica", e);
+                }
+            }
+        }
+    }
+
+    private void addClicks(byte[] records) throws IOException {
+        Map<String, Long> clicks = new HashMap<>();
+        ShorthandLog.read(records, new ShorthandLog.Handler() {
+            @Override
+            public void user(String username, String password) {
+            }
+
+            @Override
+            public void shorthand(Shorthand shorthand) {
+            }
+
+            @Override
+            public void hits(String shortUrl, long hits) {
+                clicks.merge(shortUrl, hits, Long::sum);
+            }
+        });
+        for (String shortUrl : clicks.keySet()) {
+            // loads the hits of the snapshot first, they would overwrite the added ones
+            dao.getShorthand(shortUrl);
+        }
+        dao.addHits(clicks);
+        long now = System.currentTimeMillis();
+        clicks.forEach((shortUrl, hits) -> analytics.record(shortUrl, now, hits));
+    }
+
+    /**
+     * A connected replica, changes are sent by one thread and its clicks read by another.
+     */
+    private class Session {
+        private final Socket socket;
+
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        void send() {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16))) {
+                long replicaEpoch = in.readLong();
+                long position = in.readLong();
+                boolean dump;
+                synchronized (changes) {
+                    dump = replicaEpoch != epoch || position < next - changes.length || position > next;
+                    if (dump) {
+                        position = next;
+                    }
+                }
+                if (dump) {
+                    dump(out);
+                }
+                ByteArrayOutputStream synced = new ByteArrayOutputStream(16);
+                DataOutputStream syncedOut = new DataOutputStream(synced);
+                syncedOut.writeLong(epoch);
+                syncedOut.writeLong(position);
+                ReplicationProtocol.write(out, ReplicationProtocol.SYNCED, synced.toByteArray());
+                out.flush();
+                log.info("Replica {} synced at {}{}", socket.getRemoteSocketAddress(), position, dump ? " with a dump" : "");
+
+                Thread receiver = new Thread(() -> receive(in), "replication-receiver-" + socket.getRemoteSocketAddress());
+                receiver.setDaemon(true);
+                receiver.start();
+                stream(out, position);
+            } catch (IOException | UncheckedIOException e) {
+                if (running) {
+                    log.warn("Replica {} disconnected: {}", socket.getRemoteSocketAddress(), e.toString());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        private void dump(DataOutputStream out) {
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream(DUMP_CHUNK_SIZE * 2);
+            ShorthandLog.Handler writer = ShorthandLog.writer(chunk);
+            dao.dump(new ShorthandLog.Handler() {
+                @Override
+                public void user(String username, String password) {
+                    writer.user(username, password);
+                    flush();
+                }
+
+                @Override
+                public void shorthand(Shorthand shorthand) {
+                    writer.shorthand(shorthand);
+                    flush();
+                }
+
+                @Override
+                public void hits(String shortUrl, long hits) {
+                    writer.hits(shortUrl, hits);
+                    flush();
+                }
+
+                private void flush() {
+                    if (chunk.size() >= DUMP_CHUNK_SIZE) {
+                        write(out, chunk);
+                    }
+                }
+            });
+            if (chunk.size() > 0) {
+                write(out, chunk);
+            }
+        }
+
+        private void write(DataOutputStream out, ByteArrayOutputStream chunk) {
+            try {
+                ReplicationProtocol.write(out, ReplicationProtocol.DUMP, chunk.toByteArray());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            chunk.reset();
+        }
+
+        private void stream(DataOutputStream out, long position) throws IOException, InterruptedException {
+            List<byte[]> pending = new ArrayList<>();
+            while (running && !socket.isClosed()) {
+                synchronized (changes) {
+                    if (position == next) {
+                        changes.wait(heartbeatMillis);
+                    }
+                    if (position < next - changes.length) {
+                        log.warn("Replica {} is more than {} changes behind, disconnecting it",
+                                socket.getRemoteSocketAddress(), changes.length);
+                        return;
+                    }
+                    for (; position < next; position++) {
+                        pending.add(changes[(int) (position % changes.length)]);
+                    }
+                }
+                if (pending.isEmpty()) {
+                    ReplicationProtocol.write(out, ReplicationProtocol.HEARTBEAT);
+                }
+                for (byte[] change : pending) {
+                    ReplicationProtocol.write(out, ReplicationProtocol.CHANGE, change);
+                }
+                out.flush();
+                pending.clear();
+            }
+        }
+
+        private void receive(DataInputStream in) {
+            try {
+                while (running) {
+                    ReplicationProtocol.Message message = ReplicationProtocol.read(in);
+                    if (message.type != ReplicationProtocol.CLICKS) {
+                        throw new IOException("Unexpected replication message " + message.type);
+                    }
+                    addClicks(message.payload);
+                }
+            } catch (EOFException e) {
+                log.info("Replica {} disconnected", socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                if (running && !socket.isClosed()) {
+                    log.warn("Failed to read from replica {}: {}", socket.getRemoteSocketAddress(), e.toString());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            sessions.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Failed to close the connection of replica {}", socket.getRemoteSocketAddress(), e);
+            }
+        }
+    }
+}
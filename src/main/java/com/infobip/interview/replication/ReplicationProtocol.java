@@ -0,0 +1,74 @@
+package com.infobip.interview.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Messages between the leader and its replicas, each framed as {@code [byte type][int length][payload]}.
+ * Records in a payload are framed and encoded like in the {@link com.infobip.interview.db.ShorthandLog}.
+ * <p>
+ * A replica opens the connection with {@code [long epoch][long position]}, the leader's epoch and
+ * the number of the next change it needs as of its last {@link #SYNCED}, or two zeros.
+ */
+final class ReplicationProtocol {
+
+    /**
+     * Leader to replica: records of the next change.
+     */
+    static final byte CHANGE = 1;
+    /**
+     * Leader to replica: records of the complete state, sent before {@link #SYNCED} when the
+     * replica can not continue from its position.
+     */
+    static final byte DUMP = 2;
+    /**
+     * Leader to replica: {@code [long epoch][long position]}, the changes follow from that position.
+     */
+    static final byte SYNCED = 3;
+    /**
+     * Leader to replica: nothing changed.
+     */
+    static final byte HEARTBEAT = 4;
+    /**
+     * Replica to leader: hit records holding the clicks counted since the last report.
+     */
+    static final byte CLICKS = 5;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MAX_LENGTH = 1 << 26;
+
+    private ReplicationProtocol() {
+    }
+
+    static void write(DataOutputStream out, byte type, byte[] payload) throws IOException {
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    static void write(DataOutputStream out, byte type) throws IOException {
+        write(out, type, EMPTY);
+    }
+
+    static Message read(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid replication message length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new Message(type, payload);
+    }
+
+    static class Message {
+        final byte type;
+        final byte[] payload;
+
+        Message(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+    }
+}
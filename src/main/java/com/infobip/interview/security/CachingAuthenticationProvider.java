@@ -0,0 +1,81 @@
+package com.infobip.interview.security;
+
+import com.infobip.interview.cache.SegmentedLruCache;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers successful authentications for a short time, so a client sending the same Basic
+ * credentials with every request pays for the password hash once per TTL instead of on every
+ * request. Entries are keyed by a salted SHA-256 of the username and password, the password
+ * itself is not kept. Failed attempts are never cached and always go to the delegate.
+ */
+public class CachingAuthenticationProvider implements AuthenticationProvider {
+
+    private final AuthenticationProvider delegate;
+    private final SegmentedLruCache<String, Authentication> cache;
+    // per process, so keys in a heap dump can not be checked against guessed passwords offline
+    private final byte[] salt = new byte[16];
+
+    public CachingAuthenticationProvider(AuthenticationProvider delegate, int maximumSize, long ttlSeconds) {
+        this.delegate = delegate;
+        this.cache = new SegmentedLruCache<>(maximumSize, ttlSeconds, TimeUnit.SECONDS);
+        new SecureRandom().nextBytes(salt);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!(authentication.getCredentials() instanceof String)) {
+            return delegate.authenticate(authentication);
+        }
+        String key = key(authentication.getName(), (String) authentication.getCredentials());
+        Authentication cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        Authentication result = delegate.authenticate(authentication);
+        if (result != null && result.isAuthenticated()) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public long hitCount() {
+        return cache.hitCount();
+    }
+
+    public long missCount() {
+        return cache.missCount();
+    }
+
+    private String key(String username, String password) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(salt);
+        digest.update(username.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        return Base64.getEncoder().encodeToString(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,44 @@
+package com.infobip.interview.security;
+
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.util.Collections;
+
+/**
+ * The account of the metrics scraper, kept apart from the accounts of the store. Credentials of
+ * any other username are left to the next provider without being hashed.
+ */
+public class ScrapeAuthenticationProvider implements AuthenticationProvider {
+
+    public static final String ROLE = "METRICS";
+
+    private final String username;
+    private final DaoAuthenticationProvider delegate = new DaoAuthenticationProvider();
+
+    public ScrapeAuthenticationProvider(String username, String password, PasswordEncoder passwordEncoder) {
+        this.username = username;
+        delegate.setUserDetailsService(new InMemoryUserDetailsManager(Collections.singletonList(
+                User.withUsername(username).password(passwordEncoder.encode(password)).roles(ROLE).build())));
+        delegate.setPasswordEncoder(passwordEncoder);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        if (!username.equals(authentication.getName())) {
+            return null;
+        }
+        return delegate.authenticate(authentication);
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return UsernamePasswordAuthenticationToken.class.isAssignableFrom(authentication);
+    }
+}
@@ -0,0 +1,76 @@
+package com.infobip.interview.services;
+
+import com.infobip.interview.models.LinkStats;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Sort orders of the paginated statistics. A cursor is the opaque sort key of the last link of
+ * a page, the next page starts right after it even if links were added meanwhile.
+ * <p>
+ * Paging by count is best-effort, the pages are not a snapshot: a link clicked past the count of
+ * the cursor between two pages moves onto a page already returned and is not on the next ones.
+ * Paging by url is stable.
+ */
+public enum LinkOrder {
+
+    // most clicked first
+    COUNT(Comparator.comparingLong(LinkStats::getCount).reversed().thenComparing(LinkStats::getShortUrl)) {
+        @Override
+        String key(LinkStats stats) {
+            return stats.getCount() + ":" + stats.getShortUrl();
+        }
+
+        @Override
+        LinkStats position(String key) {
+            int separator = key.indexOf(':');
+            return LinkStats.builder()
+                    .count(Long.parseLong(key.substring(0, separator)))
+                    .shortUrl(key.substring(separator + 1))
+                    .build();
+        }
+    },
+
+    URL(Comparator.comparing(LinkStats::getUrl)) {
+        @Override
+        String key(LinkStats stats) {
+            return stats.getUrl();
+        }
+
+        @Override
+        LinkStats position(String key) {
+            return LinkStats.builder().url(key).build();
+        }
+    };
+
+    private final Comparator<LinkStats> comparator;
+
+    LinkOrder(Comparator<LinkStats> comparator) {
+        this.comparator = comparator;
+    }
+
+    public Comparator<LinkStats> comparator() {
+        return comparator;
+    }
+
+    public String cursor(LinkStats last) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key(last).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not made by this order
+     */
+    public LinkStats after(String cursor) {
+        try {
+            return position(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8));
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed cursor " + cursor, e);
+        }
+    }
+
+    abstract String key(LinkStats stats);
+
+    abstract LinkStats position(String key);
+}
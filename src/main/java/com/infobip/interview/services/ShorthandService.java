@@ -1,16 +1,35 @@
 package com.infobip.interview.services;
 
+import com.infobip.interview.cache.RedirectCache;
+import com.infobip.interview.clicks.ClickPipeline;
+import com.infobip.interview.db.ClickAnalytics;
+import com.infobip.interview.db.ClickResolution;
 import com.infobip.interview.db.ShorthandDao;
+import com.infobip.interview.generators.ShortCodeGenerator;
+import com.infobip.interview.metrics.LatencyHistogram;
+import com.infobip.interview.metrics.MetricsRegistry;
+import com.infobip.interview.models.ClickStats;
+import com.infobip.interview.models.LinkStats;
+import com.infobip.interview.models.Redirect;
 import com.infobip.interview.models.Shorthand;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
 
 /**
  * Created by mikhail.davydov on 26.09.2017.
@@ -20,65 +39,240 @@ import java.util.Optional;
 @Service
 public class ShorthandService {
 
+    private static final int MAX_ATTEMPTS = 10;
+
     private final ShorthandDao dao;
+    private final ShortCodeGenerator generator;
+    private final RedirectCache cache;
+    private final ClickAnalytics analytics;
+    private final ClickPipeline clicks;
+    private final PasswordEncoder passwordEncoder;
+    private final String scrapeUsername;
+    private final LongAdder collisions;
+    private final LatencyHistogram shorthandLookups;
+    private final LatencyHistogram userShorthandLookups;
 
     @Autowired
-    public ShorthandService(ShorthandDao dao) {
+    public ShorthandService(ShorthandDao dao, ShortCodeGenerator generator, RedirectCache cache,
+                            ClickAnalytics analytics, ClickPipeline clicks, PasswordEncoder passwordEncoder, MetricsRegistry metrics,
+                            @Value("${shorthand.metrics.scrape-username:prometheus}") String scrapeUsername) {
         this.dao = dao;
+        this.generator = generator;
+        this.cache = cache;
+        this.analytics = analytics;
+        this.clicks = clicks;
+        this.passwordEncoder = passwordEncoder;
+        this.scrapeUsername = scrapeUsername;
+        this.collisions = metrics.counter("shorthand_code_collisions_total",
+                "Generated short urls that were taken and generated again");
+        String lookups = "Latency of the dao lookups";
+        this.shorthandLookups = metrics.histogram("dao_lookup_duration_seconds", lookups, "operation", "getShorthand");
+        this.userShorthandLookups = metrics.histogram("dao_lookup_duration_seconds", lookups, "operation", "getUserShorthand");
     }
 
-    public UserDetails createUser(String username) {
-        log.info("Creating account for {}", username);
+    /**
+     * @return generated password of the account, only its hash is stored, or null if the
+     * account already exists or the username is reserved for the metrics scraper
+     */
+    public String createUser(String username) {
+        log.debug("Creating account for {}", username);
+        if (username.equals(scrapeUsername)) {
+            log.debug("Account for {} is reserved for the metrics scraper", username);
+            return null;
+        }
         if (dao.userExists(username)) {
-            log.info("Account for {} already exists", username);
+            log.debug("Account for {} already exists", username);
             return null;
         }
         String password = RandomStringUtils.randomAlphanumeric(8);
-        UserDetails user = dao.createUser(username, password);
-        log.info("Account for {} created", username);
-        return user;
+        UserDetails user = dao.createUser(username, passwordEncoder.encode(password));
+        if (user == null) {
+            log.debug("Account for {} already exists", username);
+            return null;
+        }
+        log.debug("Account for {} created", username);
+        return password;
     }
 
     public Shorthand createShorthand(String username, String url, int redirectType) {
-        log.info("Creating shorthand for {}", url);
+        return createShorthandAsync(username, url, redirectType).join();
+    }
 
-        List<Shorthand> shorts = dao.getUserShorts(username);
-        if (shorts == null) {
-            shorts = new ArrayList<>();
-        }
+    /**
+     * Stores the shorthand on the calling thread like {@link #createShorthand(String, String, int)},
+     * only the wait for the log is left to the returned future.
+     */
+    public CompletableFuture<Shorthand> createShorthandAsync(String username, String url, int redirectType) {
+        log.debug("Creating shorthand for {}", url);
 
         // check if exists
-        Optional<Shorthand> existingShort = shorts.stream()
-                .filter(s -> s.getUrl().equals(url))
-                .findFirst();
-        if (existingShort.isPresent()) {
-            log.info("Shorthand {} exists for {}", existingShort.get().getShortUrl(), url);
-            return existingShort.get();
+        Shorthand existingShort = findUserShorthand(username, url);
+        if (existingShort != null) {
+            log.debug("Shorthand {} exists for {}", existingShort.getShortUrl(), url);
+            return CompletableFuture.completedFuture(existingShort);
+        }
+
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            Shorthand shorthand = Shorthand.builder()
+                    .url(url)
+                    .shortUrl(generator.next())
+                    .redirectType(redirectType)
+                    .owner(username)
+                    .build();
+            CompletableFuture<Shorthand> stored = dao.insertShorthandAsync(shorthand);
+            // a taken short url comes back completed with null
+            if (!stored.isDone() || stored.join() != null) {
+                log.debug("Shorthand for {} stored", url);
+                return stored;
+            }
+            collisions.increment();
+            log.debug("Shorthand {} is taken, retrying", shorthand.getShortUrl());
+        }
+        throw new IllegalStateException("Could not find a free shorthand for " + url + " in " + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Registers a batch of urls for one user, generating the short urls for all of them up front
+     * and only retrying those whose short url turned out to be taken.
+     *
+     * @param requests shorthands with url and redirectType set
+     * @return stored shorthands in the order of the requests
+     */
+    public List<Shorthand> createShorthands(String username, List<Shorthand> requests) {
+        log.debug("Creating {} shorthands for {}", requests.size(), username);
+        Shorthand[] results = new Shorthand[requests.size()];
+        List<Integer> pending = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            results[i] = findUserShorthand(username, requests.get(i).getUrl());
+            if (results[i] == null) {
+                pending.add(i);
+            }
         }
 
-        Shorthand shorthand = Shorthand.builder()
-                .url(url)
-                .shortUrl(RandomStringUtils.randomAlphanumeric(6))
-                .redirectType(redirectType)
-                .count(0)
+        for (int attempt = 0; attempt < MAX_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<Shorthand> batch = new ArrayList<>(pending.size());
+            for (int i : pending) {
+                Shorthand request = requests.get(i);
+                batch.add(Shorthand.builder()
+                        .url(request.getUrl())
+                        .shortUrl(generator.next())
+                        .redirectType(request.getRedirectType())
+                        .owner(username)
+                        .build());
+            }
+            List<Shorthand> stored = dao.insertShorthands(batch);
+            List<Integer> taken = new ArrayList<>();
+            for (int j = 0; j < stored.size(); j++) {
+                if (stored.get(j) == null) {
+                    taken.add(pending.get(j));
+                } else {
+                    results[pending.get(j)] = stored.get(j);
+                }
+            }
+            collisions.add(taken.size());
+            pending = taken;
+        }
+        if (!pending.isEmpty()) {
+            throw new IllegalStateException("Could not find free shorthands for " + pending.size() + " urls in " + MAX_ATTEMPTS + " attempts");
+        }
+        return Arrays.asList(results);
+    }
+
+    public Collection<Shorthand> getUserShorts(String username) {
+        return dao.getUserShorts(username);
+    }
+
+    public long getHitCount(String shortUrl) {
+        return dao.getHits(shortUrl);
+    }
+
+    /**
+     * Hands each of the user's shorthands with its hit count to {@code action}.
+     */
+    public void forEachUserShorthand(String username, ObjLongConsumer<Shorthand> action) {
+        dao.forEachUserShorthand(username, action);
+    }
+
+    /**
+     * One page of the user's links in the given order, starting after the given position. Only the
+     * links of the page are kept while the user's links are scanned.
+     *
+     * @param after position of the last link of the previous page or null for the first page
+     */
+    public List<LinkStats> getUserStatsPage(String username, LinkOrder order, LinkStats after, int limit) {
+        log.debug("Getting {} stats by {} for {}", limit, order, username);
+        Comparator<LinkStats> comparator = order.comparator();
+        // the last link of the page on top
+        PriorityQueue<LinkStats> page = new PriorityQueue<>(limit + 1, comparator.reversed());
+        dao.forEachUserShorthand(username, (shorthand, hits) -> {
+            LinkStats stats = LinkStats.builder()
+                    .url(shorthand.getUrl())
+                    .shortUrl(shorthand.getShortUrl())
+                    .count(hits)
+                    .build();
+            if (after != null && comparator.compare(stats, after) <= 0) {
+                return;
+            }
+            if (page.size() < limit) {
+                page.add(stats);
+            } else if (comparator.compare(stats, page.peek()) < 0) {
+                page.poll();
+                page.add(stats);
+            }
+        });
+        List<LinkStats> result = new ArrayList<>(page);
+        result.sort(comparator);
+        return result;
+    }
+
+    /**
+     * Resolves a short url regardless of its owner and queues the hit, it is counted in the
+     * background shortly after.
+     */
+    public Redirect redirect(String shortUrl) {
+        Redirect redirect = cache.get(shortUrl, this::findRedirect);
+        if (redirect == null) {
+            return null;
+        }
+        clicks.click(shortUrl);
+        return redirect;
+    }
+
+    /**
+     * @return clicks of the latest buckets up to now or null if the user has no such short url
+     */
+    public ClickStats getClickStats(String username, String shortUrl, ClickResolution resolution, int buckets) {
+        log.debug("Getting clicks per {} of {} for {}", resolution, shortUrl, username);
+        Shorthand shorthand = findShorthand(shortUrl);
+        if (shorthand == null || !shorthand.getOwner().equals(username)) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        return ClickStats.builder()
+                .url(shorthand.getUrl())
+                .resolution(resolution.name().toLowerCase(Locale.ROOT))
+                .from((now / resolution.millis() - buckets + 1) * resolution.millis())
+                .bucketMillis(resolution.millis())
+                .counts(analytics.counts(shortUrl, resolution, buckets, now))
                 .build();
-        shorts.add(shorthand);
-        dao.insertShorthand(username, shorts);
-        log.info("Shorthand {} for {} created", shorthand.getShortUrl(), shorthand.getUrl());
+    }
+
+    private Shorthand findShorthand(String shortUrl) {
+        long start = System.nanoTime();
+        Shorthand shorthand = dao.getShorthand(shortUrl);
+        shorthandLookups.record(System.nanoTime() - start);
         return shorthand;
     }
 
-    public List<Shorthand> getUserStats(String username) {
-        log.info("Getting stats for {}", username);
-        return dao.getUserShorts(username);
+    private Redirect findRedirect(String shortUrl) {
+        Shorthand shorthand = findShorthand(shortUrl);
+        return shorthand == null ? null : Redirect.of(shorthand);
     }
 
-    public Shorthand hitCount(String username, String url) {
-        log.info("Incrementing hitCount for {}", url);
-        Optional<Shorthand> shorthand = dao.getUserShorts(username).stream()
-                .filter(s -> s.getShortUrl().equals(url))
-                .findFirst();
-        shorthand.ifPresent(s -> s.setCount(s.getCount() + 1));
-        return shorthand.orElse(null);
+    private Shorthand findUserShorthand(String username, String url) {
+        long start = System.nanoTime();
+        Shorthand shorthand = dao.getUserShorthand(username, url);
+        userShorthandLookups.record(System.nanoTime() - start);
+        return shorthand;
     }
 }
@@ -0,0 +1,137 @@
+package com.infobip.interview.utils;
+
+import java.util.regex.Pattern;
+
+/**
+ * Validation of request input with precompiled patterns.
+ * <p>
+ * URLs first go through a hand-written check of the scheme, whitespace and a plain
+ * lowercase domain name with optional port and path. That check accepts only URLs the
+ * regular expression accepts and rejects only URLs it rejects; anything it is not sure
+ * about (IP hosts, user info, IDN hosts) is left to the regular expression.
+ */
+public final class InputValidator {
+
+    // taken from https://mathiasbynens.be/demo/url-regex
+    public static final String URL_REGEX = "^(?:(?:https?|ftp)://)(?:\\S+(?::\\S*)?@)?(?:(?!10(?:\\.\\d{1,3}){3})(?!127(?:\\.\\d{1,3}){3})(?!169\\.254(?:\\.\\d{1,3}){2})(?!192\\.168(?:\\.\\d{1,3}){2})(?!172\\.(?:1[6-9]|2\\d|3[0-1])(?:\\.\\d{1,3}){2})(?:[1-9]\\d?|1\\d\\d|2[01]\\d|22[0-3])(?:\\.(?:1?\\d{1,2}|2[0-4]\\d|25[0-5])){2}(?:\\.(?:[1-9]\\d?|1\\d\\d|2[0-4]\\d|25[0-4]))|(?:(?:[a-z\\x{00a1}-\\x{ffff}0-9]+-?)*[a-z\\x{00a1}-\\x{ffff}0-9]+)(?:\\.(?:[a-z\\x{00a1}-\\x{ffff}0-9]+-?)*[a-z\\x{00a1}-\\x{ffff}0-9]+)*(?:\\.(?:[a-z\\x{00a1}-\\x{ffff}]{2,})))(?::\\d{2,5})?(?:/[^\\s]*)?$";
+    private static final Pattern URL = Pattern.compile(URL_REGEX);
+
+    private static final String[] SCHEMES = {"http://", "https://", "ftp://"};
+    // shortest host the pattern accepts after any scheme, like a.bc
+    private static final int MIN_HOST_LENGTH = 4;
+    private static final int MIN_STRING_LENGTH = 3;
+    private static final int MAX_STRING_LENGTH = 30;
+
+    private enum Verdict {ACCEPT, REJECT, UNKNOWN}
+
+    private InputValidator() {
+    }
+
+    /**
+     * Same as matching {@code ^[a-zA-Z0-9_-]{3,30}$}.
+     */
+    public static boolean isValidString(String string) {
+        int length = string.length();
+        if (length < MIN_STRING_LENGTH || length > MAX_STRING_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = string.charAt(i);
+            if (!(isLowerAlphanumeric(c) || (c >= 'A' && c <= 'Z') || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as matching {@link #URL_REGEX}.
+     */
+    public static boolean isValidUrl(String url) {
+        switch (prefilter(url)) {
+            case ACCEPT:
+                return true;
+            case REJECT:
+                return false;
+            default:
+                return URL.matcher(url).matches();
+        }
+    }
+
+    private static Verdict prefilter(String url) {
+        int host = schemeLength(url);
+        if (host < 0 || url.length() - host < MIN_HOST_LENGTH) {
+            return Verdict.REJECT;
+        }
+        for (int i = host; i < url.length(); i++) {
+            if (isPatternWhitespace(url.charAt(i))) {
+                return Verdict.REJECT;
+            }
+        }
+        return isPlainDomainUrl(url, host) ? Verdict.ACCEPT : Verdict.UNKNOWN;
+    }
+
+    private static int schemeLength(String url) {
+        for (String scheme : SCHEMES) {
+            if (url.startsWith(scheme)) {
+                return scheme.length();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lowercase ascii labels of letters and digits joined by single hyphens, a top level
+     * domain of two or more letters, then optionally a port of 2-5 digits and a path.
+     */
+    private static boolean isPlainDomainUrl(String url, int position) {
+        int length = url.length();
+        int labelStart = position;
+        boolean lettersOnly = true;
+        int i = position;
+        for (; i < length; i++) {
+            char c = url.charAt(i);
+            if (c == '.') {
+                if (i == labelStart || url.charAt(i - 1) == '-') {
+                    return false;
+                }
+                labelStart = i + 1;
+                lettersOnly = true;
+            } else if (c == '-') {
+                if (i == labelStart || url.charAt(i - 1) == '-') {
+                    return false;
+                }
+                lettersOnly = false;
+            } else if (c >= 'a' && c <= 'z') {
+                // letter
+            } else if (c >= '0' && c <= '9') {
+                lettersOnly = false;
+            } else {
+                break;
+            }
+        }
+        // at least one dot, the last label is the top level domain
+        if (labelStart == position || !lettersOnly || i - labelStart < 2) {
+            return false;
+        }
+        if (i < length && url.charAt(i) == ':') {
+            int digits = 0;
+            for (i++; i < length && url.charAt(i) >= '0' && url.charAt(i) <= '9'; i++) {
+                digits++;
+            }
+            if (digits < 2 || digits > 5) {
+                return false;
+            }
+        }
+        return i == length || url.charAt(i) == '/';
+    }
+
+    private static boolean isLowerAlphanumeric(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isPatternWhitespace(char c) {
+        // \s without UNICODE_CHARACTER_CLASS
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,83 @@
+package com.infobip.interview.web;
+
+import com.infobip.interview.logging.AccessLogInterceptor;
+import com.infobip.interview.models.RequestWrapper;
+import com.infobip.interview.models.Shorthand;
+import com.infobip.interview.services.ShorthandService;
+import com.infobip.interview.utils.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Registration as an asynchronous servlet request: the shorthand is stored on the request thread,
+ * which is then released, and the response is written once the log writer has made the shorthand
+ * durable. Waiting for the disk no longer takes up a container thread, so the number of
+ * registrations in flight is not capped by the size of the thread pool.
+ * <p>
+ * The log's single writer thread completes the futures, so the responses are built and
+ * dispatched on threads of their own, {@code shorthand.server.async-response-threads}, and the
+ * writer goes back to the next group commit right away.
+ */
+@RestController
+@ConditionalOnProperty(name = "shorthand.server.mode", havingValue = "async")
+public class AsyncRegisterController {
+
+    private static final String SLASH = "/";
+    private final ShorthandService service;
+    private final ExecutorService responses;
+
+    @Autowired
+    public AsyncRegisterController(ShorthandService service,
+                                   @Value("${shorthand.server.async-response-threads:2}") int responseThreads) {
+        this.service = service;
+        AtomicInteger threads = new AtomicInteger();
+        this.responses = Executors.newFixedThreadPool(responseThreads, task -> {
+            Thread thread = new Thread(task, "register-response-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        responses.shutdown();
+    }
+
+    @RequestMapping(value = "/register", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity> register(HttpServletRequest request,
+                                                      @RequestBody RequestWrapper wrapper) {
+        // check input
+        String error = Requests.validate(wrapper);
+        if (error != null) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().body(Utils.response(false, error)));
+        }
+        int redirectType = Requests.redirectType(wrapper);
+
+        // read from the request while it is still being handled on the container thread
+        String username = request.getUserPrincipal().getName();
+        String baseUrl = Requests.baseUrl(request) + SLASH;
+        Function<Shorthand, ResponseEntity> respond = shorthand -> {
+            String shortUrl = baseUrl + shorthand.getShortUrl();
+            AccessLogInterceptor.detail(request, shortUrl);
+            return ResponseEntity.ok(Utils.response(shortUrl));
+        };
+        CompletableFuture<Shorthand> stored = service.createShorthandAsync(username, wrapper.getUrl(), redirectType);
+        // an existing shorthand or one stored without a log is answered right here
+        return stored.isDone() ? stored.thenApply(respond) : stored.thenApplyAsync(respond, responses);
+    }
+}
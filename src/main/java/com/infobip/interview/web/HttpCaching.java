@@ -0,0 +1,137 @@
+package com.infobip.interview.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache headers of the redirects and conditional requests of the statistics.
+ * <p>
+ * A permanent redirect never changes, browsers and shared caches keep it for
+ * {@code shorthand.http-cache.permanent-max-age-seconds}; its clicks served from a cache are not
+ * counted. Temporary redirects are not stored by caches unless {@code shorthand.http-cache.cache-temporary}
+ * is set, so each of their clicks is counted.
+ */
+@Component
+public class HttpCaching {
+
+    private static final String NO_STORE = "no-store";
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final DateTimeFormatter HTTP_DATE =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+    // the statistics change with every click, caches must ask whether their copy is still current
+    private static final String REVALIDATE = "private, no-cache";
+
+    private final Policy permanent;
+    private final Policy temporary;
+    private final CacheControl helpCacheControl;
+
+    @Autowired
+    public HttpCaching(@Value("${shorthand.http-cache.permanent-max-age-seconds:31536000}") long permanentMaxAge,
+                       @Value("${shorthand.http-cache.cache-temporary:false}") boolean cacheTemporary,
+                       @Value("${shorthand.http-cache.temporary-max-age-seconds:300}") long temporaryMaxAge,
+                       @Value("${shorthand.http-cache.help-max-age-seconds:3600}") long helpMaxAge) {
+        this.permanent = permanentMaxAge > 0
+                ? new Policy("public, max-age=" + permanentMaxAge + ", immutable", TimeUnit.SECONDS.toMillis(permanentMaxAge))
+                : new Policy(NO_STORE, 0);
+        this.temporary = cacheTemporary && temporaryMaxAge > 0
+                ? new Policy("public, max-age=" + temporaryMaxAge, TimeUnit.SECONDS.toMillis(temporaryMaxAge))
+                : new Policy(NO_STORE, 0);
+        this.helpCacheControl = CacheControl.maxAge(helpMaxAge, TimeUnit.SECONDS).cachePublic();
+    }
+
+    /**
+     * Sets the Cache-Control and Expires of a redirect, both prepared strings.
+     */
+    public void redirect(HttpServletResponse response, int redirectType) {
+        Policy policy = redirectType == HttpServletResponse.SC_MOVED_PERMANENTLY ? permanent : temporary;
+        response.setHeader(HttpHeaders.CACHE_CONTROL, policy.cacheControl);
+        response.setHeader(HttpHeaders.EXPIRES, policy.expires());
+    }
+
+    public CacheControl help() {
+        return helpCacheControl;
+    }
+
+    /**
+     * Tags the response with a weak ETag of the given version of its content.
+     *
+     * @return true if the client's copy has the same version, the response is a 304 without
+     * a body then
+     */
+    public boolean notModified(HttpServletRequest request, HttpServletResponse response, long version) {
+        response.setHeader(HttpHeaders.CACHE_CONTROL, REVALIDATE);
+        return new ServletWebRequest(request, response).checkNotModified(etag(version));
+    }
+
+    /**
+     * Adds a key and its value, like a url and its hit count, to the version of a content. The
+     * order they are added in does not matter.
+     */
+    public static long version(long version, long key, long value) {
+        long part = key * GOLDEN_GAMMA + value;
+        // murmur3 finalizer
+        part = (part ^ (part >>> 33)) * 0xff51afd7ed558ccdL;
+        part = (part ^ (part >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return version + (part ^ (part >>> 33));
+    }
+
+    private static String etag(long version) {
+        return "W/\"" + Long.toHexString(version) + "\"";
+    }
+
+    /**
+     * Cache headers of a redirect type. Expires is for HTTP/1.0 caches, a date in the past if the
+     * redirect is not to be cached, otherwise formatted once a second instead of per redirect.
+     */
+    private static class Policy {
+        private static final String PAST = format(0);
+
+        final String cacheControl;
+        final long maxAgeMillis;
+        private volatile Expires expires = new Expires(-1, PAST);
+
+        Policy(String cacheControl, long maxAgeMillis) {
+            this.cacheControl = cacheControl;
+            this.maxAgeMillis = maxAgeMillis;
+        }
+
+        String expires() {
+            if (maxAgeMillis == 0) {
+                return PAST;
+            }
+            long second = System.currentTimeMillis() / 1000;
+            Expires expires = this.expires;
+            if (expires.second != second) {
+                expires = new Expires(second, format(second * 1000 + maxAgeMillis));
+                this.expires = expires;
+            }
+            return expires.value;
+        }
+
+        private static String format(long millis) {
+            return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+        }
+    }
+
+    private static class Expires {
+        final long second;
+        final String value;
+
+        Expires(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.infobip.interview.web;
+
+import com.infobip.interview.metrics.MetricsRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+
+@RestController
+public class MetricsController {
+
+    private static final String PROMETHEUS_TEXT = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+
+    @Autowired
+    public MetricsController(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Metrics in the Prometheus text format, for the scrape account configured by
+     * {@code shorthand.metrics.scrape-username} and {@code scrape-password} only.
+     */
+    @RequestMapping(value = "/metrics/prometheus", method = RequestMethod.GET)
+    public void prometheus(HttpServletResponse response) throws IOException {
+        response.setContentType(PROMETHEUS_TEXT);
+        try (Writer writer = response.getWriter()) {
+            registry.writePrometheus(writer);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.infobip.interview.web;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.logging.AccessLog;
+import com.infobip.interview.metrics.LatencyHistogram;
+import com.infobip.interview.metrics.MetricsInterceptor;
+import com.infobip.interview.metrics.MetricsRegistry;
+import com.infobip.interview.models.Redirect;
+import com.infobip.interview.services.ShorthandService;
+import com.infobip.interview.utils.Utils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers {@code GET /{url}} itself, ahead of the security filters and the MVC dispatcher. The
+ * redirect and its headers are prepared once per link by the {@link ShorthandService}, the body
+ * of an unknown short url is serialized once, so a redirect builds no JSON and hardly allocates.
+ * <p>
+ * Requests are timed and logged like the controller methods are by the interceptors, under the
+ * endpoint {@code redirect}.
+ */
+public class RedirectFilter extends OncePerRequestFilter {
+
+    private static final String ENDPOINT = "redirect";
+    private static final Set<String> LOCAL_PATHS = new HashSet<>(Arrays.asList("help", "error", "favicon.ico"));
+
+    private final ShorthandService service;
+    private final HttpCaching caching;
+    private final AccessLog accessLog;
+    private final LatencyHistogram latency;
+    // 1xx to 5xx
+    private final LongAdder[] responses = new LongAdder[5];
+    private final byte[] incorrectShorthand;
+
+    public RedirectFilter(ShorthandService service, HttpCaching caching, MetricsRegistry metrics, AccessLog accessLog,
+                          ObjectMapper objectMapper) throws JsonProcessingException {
+        this.service = service;
+        this.caching = caching;
+        this.accessLog = accessLog;
+        // the series the metrics interceptor keeps for controller methods
+        this.latency = metrics.histogram("http_request_duration_seconds", MetricsInterceptor.LATENCY_HELP,
+                "endpoint", ENDPOINT);
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = metrics.counter("http_responses_total",
+                    "Responses by controller method and status class", "endpoint", ENDPOINT, "status", (i + 1) + "xx");
+        }
+        this.incorrectShorthand = objectMapper.writeValueAsBytes(Utils.response(false, "incorrect shorthand"));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean head = HttpMethod.HEAD.matches(request.getMethod());
+        String shortUrl = head || HttpMethod.GET.matches(request.getMethod()) ? shortUrl(request) : null;
+        if (shortUrl == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Object started = request.getAttribute(MetricsInterceptor.REQUEST_START);
+        long start = started instanceof Long ? (Long) started : System.nanoTime();
+        Redirect redirect = service.redirect(shortUrl);
+        int status;
+        if (redirect == null) {
+            status = HttpServletResponse.SC_BAD_REQUEST;
+            response.setStatus(status);
+            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            response.setContentLength(incorrectShorthand.length);
+            if (!head) {
+                response.getOutputStream().write(incorrectShorthand);
+            }
+        } else {
+            status = redirect.getStatus();
+            response.setStatus(status);
+            response.setHeader(HttpHeaders.LOCATION, redirect.getLocation());
+            caching.redirect(response, status);
+        }
+
+        long duration = System.nanoTime() - start;
+        latency.record(duration);
+        responses[status / 100 - 1].increment();
+        if (accessLog.isLogged(status)) {
+            accessLog.log(new AccessLog.Entry(System.currentTimeMillis(), request.getMethod(), request.getRequestURI(),
+                    ENDPOINT, status, duration, null, redirect == null ? null : redirect.getUrl()));
+        }
+    }
+
+    /**
+     * @return the single path segment or null if the path has more or is served by a controller
+     */
+    private static String shortUrl(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        int start = request.getContextPath().length() + 1;
+        if (uri.length() <= start || uri.indexOf('/', start) >= 0) {
+            return null;
+        }
+        String shortUrl = uri.substring(start);
+        return LOCAL_PATHS.contains(shortUrl) ? null : shortUrl;
+    }
+}
@@ -0,0 +1,48 @@
+package com.infobip.interview.web;
+
+import com.infobip.interview.logging.AccessLogInterceptor;
+import com.infobip.interview.models.RequestWrapper;
+import com.infobip.interview.services.ShorthandService;
+import com.infobip.interview.utils.Utils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Registration on the request thread, which waits for the shorthand to be written to the log.
+ */
+@RestController
+@ConditionalOnProperty(name = "shorthand.server.mode", havingValue = "servlet", matchIfMissing = true)
+public class RegisterController {
+
+    private static final String SLASH = "/";
+    private final ShorthandService service;
+
+    @Autowired
+    public RegisterController(ShorthandService service) {
+        this.service = service;
+    }
+
+    @RequestMapping(value = "/register", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity register(HttpServletRequest request,
+                                   @RequestBody RequestWrapper wrapper) {
+        // check input
+        String error = Requests.validate(wrapper);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Utils.response(false, error));
+        }
+        int redirectType = Requests.redirectType(wrapper);
+
+        String username = request.getUserPrincipal().getName();
+        String shortUrl = Requests.baseUrl(request) + SLASH + service.createShorthand(username, wrapper.getUrl(), redirectType).getShortUrl();
+        AccessLogInterceptor.detail(request, shortUrl);
+        return ResponseEntity.ok(Utils.response(shortUrl));
+    }
+}
@@ -0,0 +1,58 @@
+package com.infobip.interview.web;
+
+import com.infobip.interview.models.RequestWrapper;
+import com.infobip.interview.utils.Utils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Checks of register requests and short url building shared by the controllers.
+ */
+final class Requests {
+
+    private static final int DEFAULT_PORT = 80;
+    // the url column of db/shorthand-schema.sql, enforced for every store alike
+    static final int MAX_URL_LENGTH = 2048;
+
+    private Requests() {
+    }
+
+    /**
+     * @return description of what is wrong with the register request or null if it is valid
+     */
+    static String validate(RequestWrapper wrapper) {
+        if (wrapper.getUrl() != null && wrapper.getUrl().length() > MAX_URL_LENGTH) {
+            return "url longer than " + MAX_URL_LENGTH + " characters";
+        }
+        if (!(wrapper.getUrl() != null && Utils.isValidUrl(wrapper.getUrl()))) {
+            return "incorrect url";
+        }
+        if (!isValidRedirectType(redirectType(wrapper))) {
+            return "incorrect redirectType";
+        }
+        return null;
+    }
+
+    static int redirectType(RequestWrapper wrapper) {
+        if (wrapper.getRedirectType() == null) {
+            return HttpServletResponse.SC_MOVED_TEMPORARILY;
+        }
+        try {
+            return Integer.parseInt(wrapper.getRedirectType());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static String baseUrl(HttpServletRequest request) {
+        String scheme = request.getScheme() + "://";
+        String serverName = request.getServerName();
+        String serverPort = (request.getServerPort() == DEFAULT_PORT) ? "" : ":" + request.getServerPort();
+        return scheme + serverName + serverPort;
+    }
+
+    private static boolean isValidRedirectType(int redirectType) {
+        return redirectType == HttpServletResponse.SC_MOVED_PERMANENTLY || redirectType == HttpServletResponse.SC_MOVED_TEMPORARILY;
+    }
+}
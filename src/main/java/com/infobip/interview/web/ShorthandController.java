@@ -1,41 +1,62 @@
 package com.infobip.interview.web;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.db.ClickResolution;
+import com.infobip.interview.models.ClickStats;
 import com.infobip.interview.models.HelpResponse;
+import com.infobip.interview.models.LinkStats;
 import com.infobip.interview.models.RequestWrapper;
 import com.infobip.interview.models.Shorthand;
+import com.infobip.interview.services.LinkOrder;
 import com.infobip.interview.services.ShorthandService;
 import com.infobip.interview.utils.Utils;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Map;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.stream.Collectors;
 
 /**
  * Created by mikhail.davydov on 26.09.2017.
  */
 
-@Slf4j
 @RestController
 public class ShorthandController {
 
     private static final String SLASH = "/";
-    private static final int DEFAULT_PORT = 80;
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int BULK_CHUNK_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final HelpResponse HELP = helpResponse();
     private final ShorthandService service;
+    private final ObjectMapper objectMapper;
+    private final HttpCaching caching;
+    // the help only changes with a new version, which is started anew
+    private final long started = System.currentTimeMillis();
 
     @Autowired
-    public ShorthandController(ShorthandService service) {
+    public ShorthandController(ShorthandService service, ObjectMapper objectMapper, HttpCaching caching) {
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.caching = caching;
     }
 
     @RequestMapping(value = "/account", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -45,79 +66,227 @@ public class ShorthandController {
             return ResponseEntity.badRequest().body(Utils.response(false, "incorrect AccountId"));
         }
 
-        log.info("POST request on creating user for {}", request.getUsername());
-        UserDetails response = service.createUser(request.getUsername());
-        if (response == null) {
+        String password = service.createUser(request.getUsername());
+        if (password == null) {
             return ResponseEntity.badRequest().body(Utils.response(false, "Account with that ID already exists"));
         }
-        return ResponseEntity.ok(Utils.response(true, "Your account is opened", response.getPassword()));
+        return ResponseEntity.ok(Utils.response(true, "Your account is opened", password));
     }
 
-    @RequestMapping(value = "/register", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity register(HttpServletRequest request,
-                                   @RequestBody RequestWrapper wrapper) {
-        // check input
-        if (!(wrapper.getUrl() != null && Utils.isValidUrl(wrapper.getUrl()))) {
-            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect url"));
-        }
+    /**
+     * Registers a JSON array or newline delimited JSON of register requests. The requests are read
+     * and stored in chunks, the response for each of them is written in the same order and format
+     * as soon as its chunk is stored, either a shortUrl or a failure description. An element which
+     * is not an object fails on its own; a body which is not valid JSON aborts the response
+     * without closing the array, so the truncation is visible to the client.
+     */
+    @RequestMapping(value = "/register/bulk", method = RequestMethod.POST, consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public void registerBulk(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String username = request.getUserPrincipal().getName();
+        String baseUrl = Requests.baseUrl(request) + SLASH;
+        try (JsonParser parser = objectMapper.getFactory().createParser(request.getInputStream())) {
+            boolean array = parser.nextToken() == JsonToken.START_ARRAY;
+            if (array) {
+                parser.nextToken();
+            }
+            if (!isBulkBoundary(parser.getCurrentToken(), array)) {
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                objectMapper.writeValue(response.getOutputStream(), Utils.response(false, "incorrect body"));
+                return;
+            }
 
-        // redirectType
-        int redirectType = 0;
-        if (wrapper.getRedirectType() != null) {
-            try {
-                redirectType = Integer.parseInt(wrapper.getRedirectType());
-            } catch (NumberFormatException e) {
-                // nothing to do here
+            response.setContentType(array ? MediaType.APPLICATION_JSON_VALUE : NDJSON);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.setRootValueSeparator(null);
+                // an aborted array is left open on close
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+                if (array) {
+                    generator.writeStartArray();
+                }
+                // null for an element which is not a register request
+                List<RequestWrapper> chunk = new ArrayList<>(BULK_CHUNK_SIZE);
+                while (parser.getCurrentToken() != null && parser.getCurrentToken() != JsonToken.END_ARRAY) {
+                    if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                        chunk.add(objectMapper.readValue(parser, RequestWrapper.class));
+                    } else {
+                        parser.skipChildren();
+                        chunk.add(null);
+                    }
+                    parser.nextToken();
+                    if (chunk.size() == BULK_CHUNK_SIZE) {
+                        registerChunk(username, baseUrl, chunk, generator, array);
+                        chunk.clear();
+                    }
+                }
+                registerChunk(username, baseUrl, chunk, generator, array);
+                if (array != (parser.getCurrentToken() == JsonToken.END_ARRAY)) {
+                    throw new JsonParseException(parser, "Unexpected end of the register requests");
+                }
+                if (array) {
+                    generator.writeEndArray();
+                }
             }
-        } else {
-            redirectType = HttpServletResponse.SC_MOVED_TEMPORARILY;
-        }
-        if (!isValidRedirectType(redirectType)) {
-            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect redirectType"));
         }
-
-        log.info("POST request on register shorthand for {}", wrapper.getUrl());
-        String username = request.getUserPrincipal().getName();
-        log.info("get base url: {}", getBaseUrl(request));
-        String shortUrl = getBaseUrl(request) + SLASH + service.createShorthand(username, wrapper.getUrl(), redirectType).getShortUrl();
-        return ResponseEntity.ok(Utils.response(shortUrl));
     }
 
     @RequestMapping(value = "/statistic/{AccountId}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity statistic(HttpServletRequest request,
-                                    @PathVariable(value = "AccountId") String username) {
+                                    HttpServletResponse response,
+                                    @PathVariable(value = "AccountId") String username) throws IOException {
         //check input
         String principal = request.getUserPrincipal().getName();
-        log.info("{} requested stats for {}", principal, username);
         if (!principal.equals(username)) {
             return ResponseEntity.badRequest().body(Utils.response(false, "incorrect AccountId"));
         }
 
-        Map<String, Integer> response = service.getUserStats(username).stream()
-                .collect(Collectors.toMap(Shorthand::getUrl, Shorthand::getCount));
-        return ResponseEntity.ok(response);
+        // the links are read twice, the response is not kept in memory
+        long[] version = {0};
+        service.forEachUserShorthand(username, (shorthand, hits) ->
+                version[0] = HttpCaching.version(version[0], shorthand.getUrl().hashCode(), hits));
+        if (caching.notModified(request, response, version[0])) {
+            return null;
+        }
+
+        // url -> hit count, written link by link
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            try {
+                service.forEachUserShorthand(username, (shorthand, hits) -> {
+                    try {
+                        generator.writeNumberField(shorthand.getUrl(), hits);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndObject();
+        }
+        return null;
     }
 
-    @RequestMapping(value = "/{url}", method = RequestMethod.GET)
-    public ResponseEntity redirect(HttpServletRequest request,
-                                   HttpServletResponse response,
-                                   @PathVariable String url) {
+    /**
+     * A page of the user's links with their hit counts, sorted by count or url. The nextCursor of
+     * the response is passed as the cursor to get the next page, it is absent on the last page.
+     * Links clicked meanwhile may be missed when paging by count, see {@link LinkOrder}.
+     */
+    @RequestMapping(value = "/statistic/{AccountId}/links", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity statisticLinks(HttpServletRequest request,
+                                         HttpServletResponse response,
+                                         @PathVariable(value = "AccountId") String username,
+                                         @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                         @RequestParam(value = "cursor", required = false) String cursor,
+                                         @RequestParam(value = "sort", defaultValue = "count") String sort) throws IOException {
         //check input
-        String username = request.getUserPrincipal().getName();
-        log.info("{} requested redirect with the shorthand {}", username, url);
-        Shorthand shorthand = service.hitCount(username, url);
-        if (shorthand == null) {
-            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect shorthand"));
+        String principal = request.getUserPrincipal().getName();
+        if (!principal.equals(username)) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect AccountId"));
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect limit"));
+        }
+        LinkOrder order;
+        try {
+            order = LinkOrder.valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect sort"));
+        }
+        LinkStats after;
+        try {
+            after = cursor == null ? null : order.after(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect cursor"));
         }
 
-        log.info("redirect from {} to {}", url, shorthand.getUrl());
-        response.setStatus(shorthand.getRedirectType());
-        response.setHeader("Location", shorthand.getUrl());
+        // one more link than asked tells if there is a next page
+        List<LinkStats> page = service.getUserStatsPage(username, order, after, limit + 1);
+        boolean hasNext = page.size() > limit;
+        if (hasNext) {
+            page = page.subList(0, limit);
+        }
+        long version = hasNext ? 1 : 0;
+        for (LinkStats stats : page) {
+            version = HttpCaching.version(version, stats.getUrl().hashCode(), stats.getCount());
+        }
+        if (caching.notModified(request, response, version)) {
+            return null;
+        }
+        String baseUrl = Requests.baseUrl(request) + SLASH;
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("links");
+            for (LinkStats stats : page) {
+                generator.writeStartObject();
+                generator.writeStringField("url", stats.getUrl());
+                generator.writeStringField("shortUrl", baseUrl + stats.getShortUrl());
+                generator.writeNumberField("count", stats.getCount());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            if (hasNext) {
+                generator.writeStringField("nextCursor", order.cursor(page.get(page.size() - 1)));
+            }
+            generator.writeEndObject();
+        }
         return null;
     }
 
+    /**
+     * Clicks of one of the user's short urls per minute, hour or day, by default all buckets kept
+     * for the resolution.
+     */
+    @RequestMapping(value = "/statistic/{AccountId}/clicks/{shortUrl}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity statisticClicks(HttpServletRequest request,
+                                          HttpServletResponse response,
+                                          @PathVariable(value = "AccountId") String username,
+                                          @PathVariable(value = "shortUrl") String shortUrl,
+                                          @RequestParam(value = "resolution", defaultValue = "hour") String resolution,
+                                          @RequestParam(value = "buckets", required = false) Integer buckets) {
+        //check input
+        String principal = request.getUserPrincipal().getName();
+        if (!principal.equals(username)) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect AccountId"));
+        }
+        ClickResolution clickResolution;
+        try {
+            clickResolution = ClickResolution.valueOf(resolution.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect resolution"));
+        }
+        int count = buckets == null ? clickResolution.buckets() : buckets;
+        if (count < 1 || count > clickResolution.buckets()) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect buckets"));
+        }
+
+        ClickStats clicks = service.getClickStats(username, shortUrl, clickResolution, count);
+        if (clicks == null) {
+            return ResponseEntity.badRequest().body(Utils.response(false, "incorrect shorthand"));
+        }
+        long version = clicks.getFrom();
+        for (int i = 0; i < clicks.getCounts().length; i++) {
+            version = HttpCaching.version(version, i, clicks.getCounts()[i]);
+        }
+        if (caching.notModified(request, response, version)) {
+            return null;
+        }
+        return ResponseEntity.ok(clicks);
+    }
+
     @RequestMapping(value = "/help", method = RequestMethod.GET)
     public ResponseEntity help() {
+        // a conditional request is answered with a 304 by Spring
+        return ResponseEntity.ok()
+                .cacheControl(caching.help())
+                .eTag(Integer.toHexString(HELP.hashCode()))
+                .lastModified(started)
+                .body(HELP);
+    }
+
+    private static HelpResponse helpResponse() {
         String installation = "prerequisites:\n" +
                 "installed Java 8 and maven\n" +
                 "1. download project with the link https://github.com/mkhldvdv/infobip/archive/master.zip and unzip \n" +
@@ -132,25 +301,53 @@ public class ShorthandController {
                 "Registration of URLs:\n" +
                 "POST to /register with body {url: 'http://stackoverflow.com/questions/1567929/website-safe-data-access-architecture-question?rq=1',redirectType : 301}\n" +
                 "\n" +
+                "Bulk registration of URLs:\n" +
+                "POST to /register/bulk with a JSON array or newline delimited JSON of /register bodies\n" +
+                "\n" +
                 "Retrieval of statistics:\n" +
                 "GET to /statistic/{AccountId}\n" +
+                "GET to /statistic/{AccountId}/links?limit=100&sort=count|url&cursor={nextCursor of the previous page}\n" +
+                "GET to /statistic/{AccountId}/clicks/{url}?resolution=minute|hour|day&buckets={number of latest buckets}\n" +
                 "\n" +
                 "Redirecting with a shorthand:\n" +
-                "GET to /{url}\n" +
+                "GET to /{url}, no authentication required\n" +
+                "\n" +
+                "Metrics:\n" +
+                "GET to /metrics/prometheus with Basic credentials of shorthand.metrics.scrape-username and scrape-password, " +
+                "closed while no scrape password is configured, also exported over JMX\n" +
                 "\n" +
                 "Help:\n" +
                 "GET to /help";
-        return ResponseEntity.ok(HelpResponse.builder().installation(installation).launching(launching).usage(usage).build());
+        return HelpResponse.builder().installation(installation).launching(launching).usage(usage).build();
     }
 
-    private String getBaseUrl(HttpServletRequest request) {
-        String scheme = request.getScheme() + "://";
-        String serverName = request.getServerName();
-        String serverPort = (request.getServerPort() == DEFAULT_PORT) ? "" : ":" + request.getServerPort();
-        return scheme + serverName + serverPort;
+    private void registerChunk(String username, String baseUrl, List<RequestWrapper> chunk,
+                               JsonGenerator generator, boolean array) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<String> errors = chunk.parallelStream()
+                .map(wrapper -> wrapper == null ? "incorrect register request" : Requests.validate(wrapper))
+                .collect(Collectors.toList());
+        List<Shorthand> requests = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            if (errors.get(i) == null) {
+                requests.add(Shorthand.builder().url(chunk.get(i).getUrl()).redirectType(Requests.redirectType(chunk.get(i))).build());
+            }
+        }
+        Iterator<Shorthand> stored = service.createShorthands(username, requests).iterator();
+        for (String error : errors) {
+            generator.writeObject(error == null
+                    ? Utils.response(baseUrl + stored.next().getShortUrl())
+                    : Utils.response(false, error));
+            if (!array) {
+                generator.writeRaw('\n');
+            }
+        }
+        generator.flush();
     }
 
-    private boolean isValidRedirectType(int redirectType) {
-        return redirectType == HttpServletResponse.SC_MOVED_PERMANENTLY || redirectType == HttpServletResponse.SC_MOVED_TEMPORARILY;
+    private static boolean isBulkBoundary(JsonToken token, boolean array) {
+        return token == JsonToken.START_OBJECT || (array ? token == JsonToken.END_ARRAY : token == null);
     }
 }
@@ -0,0 +1,25 @@
+-- accounts in the tables JdbcUserDetailsManager expects
+CREATE TABLE IF NOT EXISTS users (
+    username VARCHAR(50) NOT NULL PRIMARY KEY,
+    password VARCHAR(100) NOT NULL,
+    enabled BOOLEAN NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS authorities (
+    username VARCHAR(50) NOT NULL,
+    authority VARCHAR(50) NOT NULL,
+    CONSTRAINT fk_authorities_users FOREIGN KEY (username) REFERENCES users (username)
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ix_authorities_username ON authorities (username, authority);
+
+-- redirects look up the primary key, registrations and statistics the owner index
+CREATE TABLE IF NOT EXISTS shorthands (
+    short_url VARCHAR(32) NOT NULL PRIMARY KEY,
+    owner VARCHAR(50) NOT NULL,
+    url VARCHAR(2048) NOT NULL,
+    redirect_type INT NOT NULL,
+    hits BIGINT DEFAULT 0 NOT NULL
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS ix_shorthands_owner_url ON shorthands (owner, url);
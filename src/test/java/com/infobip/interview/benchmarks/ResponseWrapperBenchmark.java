@@ -0,0 +1,52 @@
+package com.infobip.interview.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.models.ResponseWrapper;
+import com.infobip.interview.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the responses of /register and /account.
+ * <p>
+ * Run with {@code mvn -P benchmark verify -Djmh.args=ResponseWrapperBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseWrapperBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ResponseWrapper shortUrl = Utils.response("http://localhost:8080/aB3dE9");
+    private final ResponseWrapper account = Utils.response(true, "Your account is opened", "pa55w0rd");
+
+    @Benchmark
+    public byte[] shortUrl() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(shortUrl);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public byte[] shortUrlContended() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(shortUrl);
+    }
+
+    @Benchmark
+    public byte[] account() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(account);
+    }
+}
@@ -0,0 +1,54 @@
+package com.infobip.interview.benchmarks;
+
+import com.infobip.interview.generators.RandomShortCodeGenerator;
+import com.infobip.interview.generators.SequenceShortCodeGenerator;
+import com.infobip.interview.generators.ShortCodeGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run with {@code mvn -P benchmark verify -Djmh.args=ShortCodeGeneratorBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortCodeGeneratorBenchmark {
+
+    private final ShortCodeGenerator random = new RandomShortCodeGenerator(6);
+    private final ShortCodeGenerator sequence = new SequenceShortCodeGenerator(6, 0, 1, 1000, 0);
+
+    @Benchmark
+    public String random() {
+        return random.next();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String randomContended() {
+        return random.next();
+    }
+
+    @Benchmark
+    public String sequence() {
+        return sequence.next();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String sequenceContended() {
+        return sequence.next();
+    }
+}
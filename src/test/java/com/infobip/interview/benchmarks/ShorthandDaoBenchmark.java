@@ -0,0 +1,156 @@
+package com.infobip.interview.benchmarks;
+
+import com.infobip.interview.db.HeapShorthandStore;
+import com.infobip.interview.db.HitCounters;
+import com.infobip.interview.db.InMemoryShorthandDao;
+import com.infobip.interview.db.JdbcShorthandDao;
+import com.infobip.interview.db.ShorthandDao;
+import com.infobip.interview.db.ShorthandLog;
+import com.infobip.interview.models.Shorthand;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.security.provisioning.JdbcUserDetailsManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory store against the relational one on an in-memory H2 database, pooled like the
+ * application configures it. The jdbc store flushes its clicks once per invocation of
+ * {@link #flushClicks()} instead of periodically.
+ * <p>
+ * Run with {@code mvn -P benchmark verify -Djmh.args=ShorthandDaoBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShorthandDaoBenchmark {
+
+    private static final String USERNAME = "benchmark";
+    private static final int LINKS = 10000;
+    private static final int CLICK_BATCH = 1000;
+
+    @Param({"memory", "jdbc"})
+    public String store;
+
+    private DataSource dataSource;
+    private ShorthandDao dao;
+    private String[] shortUrls;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (store.equals("jdbc")) {
+            dataSource = new DataSource();
+            dataSource.setUrl("jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1");
+            dataSource.setDriverClassName("org.h2.Driver");
+            dataSource.setMaxActive(Runtime.getRuntime().availableProcessors() * 2);
+            dataSource.setJdbcInterceptors("StatementCache(prepared=true,max=50)");
+            JdbcUserDetailsManager users = new JdbcUserDetailsManager();
+            users.setDataSource(dataSource);
+            JdbcShorthandDao jdbc = new JdbcShorthandDao(dataSource, users);
+            jdbc.createSchema();
+            dao = jdbc;
+        } else {
+            dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()),
+                    new ShorthandLog(false, "data"), new HitCounters(), new HeapShorthandStore());
+        }
+        shortUrls = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            shortUrls[i] = "s" + i;
+            dao.insertShorthand(shorthand(shortUrls[i], "http://example.com/" + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+
+    private static Shorthand shorthand(String shortUrl, String url) {
+        return Shorthand.builder().owner(USERNAME).shortUrl(shortUrl).url(url).redirectType(302).build();
+    }
+
+    @State(Scope.Thread)
+    public static class Urls {
+        private long next;
+
+        String next() {
+            return Thread.currentThread().getId() + "-" + next++;
+        }
+    }
+
+    @Benchmark
+    public Shorthand insertShorthand(Urls urls) {
+        String code = urls.next();
+        return dao.insertShorthand(shorthand(code, "http://example.com/" + code));
+    }
+
+    @Benchmark
+    public Shorthand getShorthand() {
+        return dao.getShorthand(shortUrls[ThreadLocalRandom.current().nextInt(LINKS)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Shorthand getShorthandContended() {
+        return dao.getShorthand(shortUrls[ThreadLocalRandom.current().nextInt(LINKS)]);
+    }
+
+    @Benchmark
+    public Shorthand getUserShorthand() {
+        return dao.getUserShorthand(USERNAME, "http://example.com/" + ThreadLocalRandom.current().nextInt(LINKS));
+    }
+
+    @Benchmark
+    public void addHits() {
+        dao.addHits(Collections.singletonMap(shortUrls[ThreadLocalRandom.current().nextInt(LINKS)], 1L));
+    }
+
+    /**
+     * Clicks of one batch of the click pipeline, written to the database right away by the jdbc store.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void flushClicks() {
+        Map<String, Long> clicks = new HashMap<>(CLICK_BATCH * 2);
+        for (int i = 0; i < CLICK_BATCH; i++) {
+            clicks.merge(shortUrls[ThreadLocalRandom.current().nextInt(LINKS)], 1L, Long::sum);
+        }
+        dao.addHits(clicks);
+        if (dao instanceof JdbcShorthandDao) {
+            ((JdbcShorthandDao) dao).flush();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void userStats(Blackhole blackhole) {
+        dao.forEachUserShorthand(USERNAME, (shorthand, hits) -> {
+            blackhole.consume(shorthand.getUrl());
+            blackhole.consume(hits);
+        });
+    }
+}
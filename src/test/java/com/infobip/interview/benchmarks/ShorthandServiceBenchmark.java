@@ -0,0 +1,140 @@
+package com.infobip.interview.benchmarks;
+
+import com.infobip.interview.cache.RedirectCache;
+import com.infobip.interview.clicks.ClickPipeline;
+import com.infobip.interview.db.ClickAnalytics;
+import com.infobip.interview.db.HeapShorthandStore;
+import com.infobip.interview.db.HitCounters;
+import com.infobip.interview.db.InMemoryShorthandDao;
+import com.infobip.interview.db.ShorthandDao;
+import com.infobip.interview.db.ShorthandLog;
+import com.infobip.interview.generators.RandomShortCodeGenerator;
+import com.infobip.interview.metrics.MetricsRegistry;
+import com.infobip.interview.models.LinkStats;
+import com.infobip.interview.models.Redirect;
+import com.infobip.interview.models.Shorthand;
+import com.infobip.interview.security.HashingPasswordEncoder;
+import com.infobip.interview.services.LinkOrder;
+import com.infobip.interview.services.ShorthandService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service hot paths against in-memory storage with the write-ahead log disabled, single threaded
+ * and with as many threads as there are cores.
+ * <p>
+ * Run with {@code mvn -P benchmark verify -Djmh.args=ShorthandServiceBenchmark},
+ * {@code -Djmh.args="ShorthandServiceBenchmark -p linksPerAccount=1000000"} for other account sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShorthandServiceBenchmark {
+
+    private static final String USERNAME = "benchmark";
+
+    @Param({"100", "10000"})
+    public int linksPerAccount;
+
+    private ClickPipeline clicks;
+    private ShorthandService service;
+    private String[] shortUrls;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HitCounters counters = new HitCounters();
+        ClickAnalytics analytics = new ClickAnalytics();
+        ShorthandLog shorthandLog = new ShorthandLog(false, "data");
+        ShorthandDao dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()), shorthandLog,
+                counters, new HeapShorthandStore());
+        clicks = new ClickPipeline(dao, analytics, 65536, "drop");
+        clicks.start();
+        service = new ShorthandService(dao, new RandomShortCodeGenerator(6), new RedirectCache(100000, 3600),
+                analytics, clicks, new HashingPasswordEncoder(4), new MetricsRegistry(), "prometheus");
+
+        service.createUser(USERNAME);
+        shortUrls = new String[linksPerAccount];
+        for (int i = 0; i < linksPerAccount; i++) {
+            shortUrls[i] = service.createShorthand(USERNAME, "http://example.com/" + i, 302).getShortUrl();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        clicks.stop();
+    }
+
+    @State(Scope.Thread)
+    public static class Urls {
+        private long next;
+
+        String next() {
+            return "http://example.com/" + Thread.currentThread().getId() + "/" + next++;
+        }
+    }
+
+    @Benchmark
+    public Shorthand createShorthand(Urls urls) {
+        return service.createShorthand(USERNAME, urls.next(), 302);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Shorthand createShorthandContended(Urls urls) {
+        return service.createShorthand(USERNAME, urls.next(), 302);
+    }
+
+    @Benchmark
+    public Shorthand createExistingShorthand() {
+        return service.createShorthand(USERNAME, "http://example.com/0", 302);
+    }
+
+    @Benchmark
+    public Redirect redirect() {
+        return service.redirect(shortUrls[ThreadLocalRandom.current().nextInt(shortUrls.length)]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Redirect redirectContended() {
+        return service.redirect(shortUrls[ThreadLocalRandom.current().nextInt(shortUrls.length)]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void userStats(Blackhole blackhole) {
+        // what GET /statistic/{AccountId} writes
+        service.forEachUserShorthand(USERNAME, (shorthand, hits) -> {
+            blackhole.consume(shorthand.getUrl());
+            blackhole.consume(hits);
+        });
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<LinkStats> userStatsPage() {
+        return service.getUserStatsPage(USERNAME, LinkOrder.COUNT, null, 101);
+    }
+}
@@ -0,0 +1,53 @@
+package com.infobip.interview.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedLruCacheTest {
+
+    @Test
+    public void sizeIsBounded() throws Exception {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(1000, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertTrue(cache.size() <= 1000);
+        assertEquals(10000 - cache.size(), cache.evictionCount());
+    }
+
+    @Test
+    public void frequentlyUsedEntriesSurviveScan() throws Exception {
+        SegmentedLruCache<Integer, String> cache = new SegmentedLruCache<>(10, 1, TimeUnit.HOURS);
+        cache.put(-1, "hot");
+        cache.get(-1);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertEquals("hot", cache.get(-1));
+    }
+
+    @Test
+    public void loaderResultIsCached() throws Exception {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10, 1, TimeUnit.HOURS);
+        assertEquals("a!", cache.get("a", k -> k + "!"));
+        assertEquals("a!", cache.get("a", k -> null));
+        assertNull(cache.get("b", k -> null));
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void entriesExpire() throws Exception {
+        SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10, 1, TimeUnit.MILLISECONDS);
+        cache.put("a", "a");
+        Thread.sleep(5);
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.expirationCount());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,105 @@
+package com.infobip.interview.clicks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClickQueueTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int CLICKS_PER_PRODUCER = 100000;
+
+    @Test
+    public void offerFailsWhenFullAndDrainKeepsOrder() throws Exception {
+        ClickQueue queue = new ClickQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer("url" + i, i));
+        }
+        assertFalse(queue.offer("url4", 4));
+        assertEquals(4, queue.size());
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(3, queue.drain((shortUrl, time) -> drained.add(shortUrl + "@" + time), 3));
+        assertTrue(queue.offer("url4", 4));
+        assertEquals(2, queue.drain((shortUrl, time) -> drained.add(shortUrl + "@" + time), 10));
+        assertEquals("[url0@0, url1@1, url2@2, url3@3, url4@4]", drained.toString());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void failingConsumerDoesNotStallTheQueue() throws Exception {
+        ClickQueue queue = new ClickQueue(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer("url" + i, i));
+        }
+        try {
+            queue.drain((shortUrl, time) -> {
+                if (time == 1) {
+                    throw new IllegalStateException("failed");
+                }
+            }, 10);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(2, queue.drain((shortUrl, time) -> drained.add(shortUrl), 10));
+        assertEquals("[url2, url3]", drained.toString());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer("next" + i, i));
+        }
+        assertEquals(4, queue.drain((shortUrl, time) -> drained.add(shortUrl), 10));
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws Exception {
+        ClickQueue queue = new ClickQueue(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(PRODUCERS);
+        List<Future<?>> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            String shortUrl = "url" + p;
+            producers.add(executor.submit(() -> {
+                for (int i = 0; i < CLICKS_PER_PRODUCER; i++) {
+                    while (!queue.offer(shortUrl, i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        Map<String, Long> counts = new HashMap<>();
+        Map<String, Long> lastTimes = new HashMap<>();
+        long total = 0;
+        while (total < (long) PRODUCERS * CLICKS_PER_PRODUCER) {
+            total += queue.drain((shortUrl, time) -> {
+                counts.merge(shortUrl, 1L, Long::sum);
+                // clicks of one producer come out in the order they went in
+                Long last = lastTimes.put(shortUrl, time);
+                assertTrue(last == null || last < time);
+            }, 256);
+        }
+        for (Future<?> producer : producers) {
+            producer.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        assertEquals(PRODUCERS, counts.size());
+        for (long count : counts.values()) {
+            assertEquals(CLICKS_PER_PRODUCER, count);
+        }
+        assertEquals(0, queue.size());
+    }
+}
@@ -0,0 +1,213 @@
+package com.infobip.interview.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The filter of node a in front of a stubbed node b, node c is down.
+ */
+public class ClusterRoutingFilterTest {
+
+    private HttpServer peer;
+    private ClusterRoutingFilter filter;
+    private ConsistentHashRing ring;
+
+    // what node b received and answers
+    private String receivedMethod;
+    private String receivedUri;
+    private Headers receivedHeaders;
+    private byte[] receivedBody;
+    private int answerStatus = 200;
+    private String answerBody = "{\"success\":true}";
+
+    @Before
+    public void setUp() throws Exception {
+        peer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        peer.createContext("/", exchange -> {
+            receivedMethod = exchange.getRequestMethod();
+            receivedUri = exchange.getRequestURI().toString();
+            receivedHeaders = exchange.getRequestHeaders();
+            receivedBody = StreamUtils.copyToByteArray(exchange.getRequestBody());
+            byte[] body = answerBody.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.getResponseHeaders().add("Location", "https://example.com/");
+            if (receivedMethod.equals("HEAD")) {
+                exchange.sendResponseHeaders(answerStatus, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(answerStatus, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        peer.start();
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        ring = new ConsistentHashRing(Arrays.asList(
+                new ClusterNode("a", "http://localhost:1"),
+                new ClusterNode("b", "http://localhost:" + peer.getAddress().getPort()),
+                new ClusterNode("c", "http://localhost:" + closedPort)), "a", 128);
+        filter = new ClusterRoutingFilter(ring, new ObjectMapper(), 1000, 5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        peer.stop(0);
+    }
+
+    @Test
+    public void redirectOfAnotherNodeIsProxied() throws Exception {
+        answerStatus = 302;
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/" + key("b"));
+        request.setQueryString("x=1");
+        request.setRemoteAddr("10.0.0.7");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNull("served locally", chain.getRequest());
+        assertEquals("GET", receivedMethod);
+        assertEquals(request.getRequestURI() + "?x=1", receivedUri);
+        assertEquals("a", receivedHeaders.getFirst(HttpProxy.FORWARDED_BY));
+        assertEquals("10.0.0.7", receivedHeaders.getFirst("X-Forwarded-For"));
+        assertEquals(302, response.getStatus());
+        assertEquals("https://example.com/", response.getHeader("Location"));
+        assertEquals(answerBody, response.getContentAsString());
+    }
+
+    @Test
+    public void headOfAnotherNodeIsProxied() throws Exception {
+        answerStatus = 301;
+        MockHttpServletRequest request = new MockHttpServletRequest("HEAD", "/" + key("b"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNull("served locally", chain.getRequest());
+        assertEquals("HEAD", receivedMethod);
+        assertEquals(301, response.getStatus());
+        assertEquals("https://example.com/", response.getHeader("Location"));
+    }
+
+    @Test
+    public void accountIsProxiedWithItsBody() throws Exception {
+        byte[] body = ("{\"AccountId\":\"" + key("b") + "\"}").getBytes(StandardCharsets.UTF_8);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/account");
+        request.setContentType("application/json");
+        request.setContent(body);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals("POST", receivedMethod);
+        assertEquals(new String(body, StandardCharsets.UTF_8), new String(receivedBody, StandardCharsets.UTF_8));
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    public void accountOfThisNodeKeepsItsBody() throws Exception {
+        byte[] body = ("{\"AccountId\":\"" + key("a") + "\"}").getBytes(StandardCharsets.UTF_8);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/account");
+        request.setContent(body);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals(new String(body, StandardCharsets.UTF_8),
+                StreamUtils.copyToString(chain.getRequest().getInputStream(), StandardCharsets.UTF_8));
+        assertNull(receivedMethod);
+    }
+
+    @Test
+    public void errorsOfTheOwnerArePassedBack() throws Exception {
+        answerStatus = 400;
+        answerBody = "{\"success\":false,\"description\":\"incorrect AccountId\"}";
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/statistic/" + key("b"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, new MockFilterChain());
+
+        assertEquals(400, response.getStatus());
+        assertEquals(answerBody, response.getContentAsString());
+    }
+
+    @Test
+    public void registrationIsRoutedByTheBasicUsername() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/register");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Basic " + Base64.getEncoder()
+                .encodeToString((key("a") + ":secret").getBytes(StandardCharsets.UTF_8)));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertNull(receivedMethod);
+    }
+
+    @Test
+    public void localAndForwardedRequestsPassThrough() throws Exception {
+        for (MockHttpServletRequest request : Arrays.asList(
+                new MockHttpServletRequest("GET", "/" + key("a")),
+                new MockHttpServletRequest("GET", "/help"),
+                forwarded(new MockHttpServletRequest("GET", "/" + key("b"))))) {
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            assertNotNull(request.getRequestURI(), chain.getRequest());
+        }
+        assertNull(receivedMethod);
+    }
+
+    @Test
+    public void unavailableOwnerIsBadGateway() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/" + key("c"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest());
+        assertEquals(502, response.getStatus());
+        assertTrue(response.getContentAsString(), response.getContentAsString().contains("\"success\":false"));
+        assertTrue(response.getContentAsString(), response.getContentAsString().contains("node c is unavailable"));
+    }
+
+    private String key(String nodeId) {
+        for (int i = 0; ; i++) {
+            if (ring.owner("key" + i).getId().equals(nodeId)) {
+                return "key" + i;
+            }
+        }
+    }
+
+    private static MockHttpServletRequest forwarded(MockHttpServletRequest request) {
+        request.addHeader(HttpProxy.FORWARDED_BY, "b");
+        return request;
+    }
+}
@@ -0,0 +1,63 @@
+package com.infobip.interview.cluster;
+
+import com.infobip.interview.generators.RandomShortCodeGenerator;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 100000;
+
+    private static List<ClusterNode> nodes(String... ids) {
+        ClusterNode[] nodes = new ClusterNode[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            nodes[i] = new ClusterNode(ids[i], "http://localhost:" + (8080 + i));
+        }
+        return Arrays.asList(nodes);
+    }
+
+    @Test
+    public void spreadsKeysEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(nodes("a", "b", "c"), "a", 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.owner("key" + i).getId(), 1, Integer::sum);
+        }
+        for (int count : counts.values()) {
+            assertTrue(counts.toString(), Math.abs(count - KEYS / 3) < KEYS / 3 / 5);
+        }
+    }
+
+    @Test
+    public void addingNodeMovesOnlyItsShare() {
+        ConsistentHashRing three = new ConsistentHashRing(nodes("a", "b", "c"), "a", 128);
+        ConsistentHashRing four = new ConsistentHashRing(nodes("a", "b", "c", "d"), "a", 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String before = three.owner("key" + i).getId();
+            String after = four.owner("key" + i).getId();
+            if (!before.equals(after)) {
+                assertEquals("d", after);
+                moved++;
+            }
+        }
+        assertTrue("moved " + moved, moved < KEYS / 3);
+    }
+
+    @Test
+    public void clusterGeneratorOnlyHandsOutLocalCodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(nodes("a", "b", "c"), "b", 128);
+        ClusterShortCodeGenerator generator = new ClusterShortCodeGenerator(
+                new RandomShortCodeGenerator(6), ring);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("b", ring.owner(generator.next()).getId());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.infobip.interview.db;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClickAnalyticsTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    // a whole day, so every resolution starts a bucket here
+    private static final long START = TimeUnit.DAYS.toMillis(20000);
+
+    private final ClickAnalytics analytics = new ClickAnalytics();
+
+    @Test
+    public void clicksAreCountedPerBucket() throws Exception {
+        analytics.record("abc", START);
+        analytics.record("abc", START + MINUTE - 1);
+        analytics.record("abc", START + 2 * MINUTE);
+        analytics.record("abc", START + HOUR);
+
+        assertArrayEquals(new long[]{2, 0, 1}, analytics.counts("abc", ClickResolution.MINUTE, 3, START + 2 * MINUTE));
+        assertArrayEquals(new long[]{3, 1}, analytics.counts("abc", ClickResolution.HOUR, 2, START + HOUR));
+        assertArrayEquals(new long[]{0, 4}, analytics.counts("abc", ClickResolution.DAY, 2, START + HOUR));
+        assertArrayEquals(new long[3], analytics.counts("other", ClickResolution.MINUTE, 3, START));
+    }
+
+    @Test
+    public void oldBucketsAreOverwrittenAfterTheRingWrapsAround() throws Exception {
+        int buckets = ClickResolution.MINUTE.buckets();
+        analytics.record("abc", START);
+        analytics.record("abc", START + buckets * MINUTE);
+
+        long[] counts = analytics.counts("abc", ClickResolution.MINUTE, buckets, START + buckets * MINUTE);
+        assertEquals(1, counts[buckets - 1]);
+        // the first click is out of the window and its slot was reused
+        assertEquals(1, sum(counts));
+        assertEquals(0, analytics.counts("abc", ClickResolution.MINUTE, 1, START)[0]);
+    }
+
+    @Test
+    public void ringsGrowOnlyForBucketsStillKept() throws Exception {
+        ClickSeries series = new ClickSeries();
+        series.record(START, 1);
+        series.record(START + 400 * TimeUnit.DAYS.toMillis(1), 1);
+        // one click a year apart needs no more slots than a single click
+        assertEquals(6, series.slots());
+
+        ClickSeries busy = new ClickSeries();
+        for (int i = 0; i < 10; i++) {
+            busy.record(START + i * MINUTE, 1);
+        }
+        assertArrayEquals(new long[]{0, 1, 1, 1}, busy.counts(ClickResolution.MINUTE, 4, START + 2 * MINUTE));
+        assertEquals(10, busy.counts(ClickResolution.HOUR, 1, START)[0]);
+        assertEquals(16 + 2 + 2, busy.slots());
+    }
+
+    @Test
+    public void idleSeriesAreEvicted() throws Exception {
+        analytics.record("abc", START);
+        analytics.record("def", START + 300 * TimeUnit.DAYS.toMillis(1));
+        analytics.evictIdle(START + 400 * TimeUnit.DAYS.toMillis(1));
+        assertEquals(1, analytics.size());
+
+        analytics.record("abc", START + 400 * TimeUnit.DAYS.toMillis(1));
+        assertEquals(2, analytics.size());
+        assertEquals(1, analytics.counts("abc", ClickResolution.DAY, 400, START + 400 * TimeUnit.DAYS.toMillis(1))[399]);
+    }
+
+    @Test
+    public void concurrentClicksAreNotLost() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        for (int thread = 0; thread < 16; thread++) {
+            executor.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    analytics.record("abc", START + i % 2 * MINUTE);
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+
+        assertArrayEquals(new long[]{80000, 80000}, analytics.counts("abc", ClickResolution.MINUTE, 2, START + MINUTE));
+        assertArrayEquals(new long[]{160000}, analytics.counts("abc", ClickResolution.DAY, 1, START));
+    }
+
+    private static long sum(long[] counts) {
+        long sum = 0;
+        for (long count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+}
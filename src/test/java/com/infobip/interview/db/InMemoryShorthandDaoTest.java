@@ -0,0 +1,135 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+public class InMemoryShorthandDaoTest {
+
+    private static final int THREADS = 200;
+    private static final int URLS_PER_THREAD = 500;
+    private static final String USERNAME = "stress";
+
+    private ShorthandDao dao;
+
+    @Before
+    public void setUp() throws Exception {
+        dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()),
+                new ShorthandLog(false, "data"), new HitCounters(), new HeapShorthandStore());
+    }
+
+    @Test
+    public void concurrentInsertsForSameAccountAreNotLost() throws Exception {
+        List<Set<String>> registered = runConcurrently(thread -> {
+            Set<String> shortUrls = new HashSet<>();
+            for (int i = 0; i < URLS_PER_THREAD; i++) {
+                shortUrls.add(insert(USERNAME, "http://example.com/" + thread + "/" + i).getShortUrl());
+            }
+            return shortUrls;
+        });
+
+        Set<String> all = new HashSet<>();
+        registered.forEach(all::addAll);
+        assertEquals(THREADS * URLS_PER_THREAD, all.size());
+        assertEquals(THREADS * URLS_PER_THREAD, dao.getUserShorts(USERNAME).size());
+        for (String shortUrl : all) {
+            assertNotNull(dao.getShorthand(shortUrl));
+        }
+    }
+
+    @Test
+    public void concurrentInsertsOfSameUrlResolveToOneShorthand() throws Exception {
+        List<Set<String>> registered = runConcurrently(thread -> {
+            Set<String> shortUrls = new HashSet<>();
+            for (int i = 0; i < URLS_PER_THREAD; i++) {
+                shortUrls.add(insert(USERNAME, "http://example.com/" + i).getShortUrl());
+            }
+            return shortUrls;
+        });
+
+        Set<String> all = new HashSet<>();
+        registered.forEach(all::addAll);
+        assertEquals(URLS_PER_THREAD, all.size());
+        assertEquals(URLS_PER_THREAD, dao.getUserShorts(USERNAME).size());
+        for (Shorthand shorthand : dao.getUserShorts(USERNAME)) {
+            assertSame(shorthand, dao.getShorthand(shorthand.getShortUrl()));
+        }
+    }
+
+    @Test
+    public void concurrentUserCreationCreatesEachUserOnce() throws Exception {
+        List<Set<String>> created = runConcurrently(thread -> {
+            Set<String> usernames = new HashSet<>();
+            for (int i = 0; i < URLS_PER_THREAD; i++) {
+                if (dao.createUser("user" + i, "password") != null) {
+                    usernames.add("user" + i);
+                }
+            }
+            return usernames;
+        });
+
+        int total = 0;
+        for (Set<String> usernames : created) {
+            total += usernames.size();
+        }
+        assertEquals(URLS_PER_THREAD, total);
+    }
+
+    private Shorthand insert(String username, String url) {
+        Shorthand stored;
+        do {
+            Shorthand shorthand = Shorthand.builder()
+                    .owner(username)
+                    .url(url)
+                    .shortUrl(Integer.toString(ThreadLocalRandom.current().nextInt(1 << 24), 36))
+                    .redirectType(302)
+                    .build();
+            stored = dao.insertShorthand(shorthand);
+        } while (stored == null);
+        return stored;
+    }
+
+    private <T> List<T> runConcurrently(ThreadTask<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit((Callable<T>) () -> {
+                    start.await();
+                    return task.run(thread);
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask<T> {
+        T run(int thread) throws Exception;
+    }
+}
@@ -0,0 +1,148 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.provisioning.JdbcUserDetailsManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JdbcShorthandDaoTest {
+
+    private DataSource dataSource;
+    private JdbcShorthandDao dao;
+
+    private static Shorthand shorthand(String owner, String shortUrl, String url) {
+        return Shorthand.builder().owner(owner).shortUrl(shortUrl).url(url).redirectType(301).build();
+    }
+
+    @Before
+    public void setUp() {
+        dataSource = new DataSource();
+        dataSource.setUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setDriverClassName("org.h2.Driver");
+        JdbcUserDetailsManager users = new JdbcUserDetailsManager();
+        users.setDataSource(dataSource);
+        dao = new JdbcShorthandDao(dataSource, users);
+        dao.createSchema();
+    }
+
+    @After
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    public void usersAreCreatedOnce() {
+        assertNotNull(dao.createUser("user", "hash"));
+        assertNull(dao.createUser("user", "other"));
+        assertTrue(dao.userExists("user"));
+        assertFalse(dao.userExists("missing"));
+        assertEquals("hash", dao.getUser("user").getPassword());
+        assertEquals(1, dao.userCount());
+    }
+
+    @Test
+    public void shorthandsAreFoundByShortUrlAndByOwnerAndUrl() {
+        Shorthand shorthand = shorthand("user", "aaaaaa", "http://example.com/a");
+        assertSame(shorthand, dao.insertShorthand(shorthand));
+        assertEquals(shorthand, dao.getShorthand("aaaaaa"));
+        assertEquals(shorthand, dao.getUserShorthand("user", "http://example.com/a"));
+        assertNull(dao.getShorthand("missing"));
+        assertEquals(1, dao.getUserShorts("user").size());
+        List<String> shortUrls = new ArrayList<>();
+        dao.forEachShortUrl(shortUrls::add);
+        assertEquals(Collections.singletonList("aaaaaa"), shortUrls);
+    }
+
+    @Test
+    public void conflictingInsertsReturnExistingOrNull() {
+        Shorthand first = shorthand("user", "aaaaaa", "http://example.com/a");
+        dao.insertShorthand(first);
+        // same url, other short url
+        assertEquals(first, dao.insertShorthand(shorthand("user", "bbbbbb", "http://example.com/a")));
+        // taken short url
+        assertNull(dao.insertShorthand(shorthand("other", "aaaaaa", "http://example.com/b")));
+        assertNull(dao.getShorthand("bbbbbb"));
+    }
+
+    @Test
+    public void conflictingBatchIsInsertedOneByOne() {
+        dao.insertShorthand(shorthand("user", "aaaaaa", "http://example.com/a"));
+        List<Shorthand> stored = dao.insertShorthands(Arrays.asList(
+                shorthand("user", "bbbbbb", "http://example.com/b"),
+                shorthand("user", "aaaaaa", "http://example.com/c"),
+                shorthand("user", "cccccc", "http://example.com/a")));
+        assertEquals("bbbbbb", stored.get(0).getShortUrl());
+        assertNull(stored.get(1));
+        assertEquals("aaaaaa", stored.get(2).getShortUrl());
+        assertEquals(2, dao.getUserShorts("user").size());
+    }
+
+    @Test
+    public void hitsAreCountedBeforeAndAfterFlush() {
+        dao.insertShorthand(shorthand("user", "aaaaaa", "http://example.com/a"));
+        dao.insertShorthand(shorthand("user", "bbbbbb", "http://example.com/b"));
+        dao.addHits(Collections.singletonMap("aaaaaa", 3L));
+        assertEquals(3, dao.getHits("aaaaaa"));
+        assertEquals(1, dao.unflushedCount());
+
+        dao.flush();
+        assertEquals(0, dao.unflushedCount());
+        dao.addHits(Collections.singletonMap("aaaaaa", 2L));
+        assertEquals(5, dao.getHits("aaaaaa"));
+        dao.flush();
+        assertEquals(5, dao.getHits("aaaaaa"));
+
+        Map<String, Long> hits = new HashMap<>();
+        dao.forEachUserShorthand("user", (shorthand, count) -> hits.put(shorthand.getShortUrl(), count));
+        assertEquals(Long.valueOf(5), hits.get("aaaaaa"));
+        assertEquals(Long.valueOf(0), hits.get("bbbbbb"));
+    }
+
+    @Test
+    public void userShorthandsAreReadInPagesWithoutHoldingAConnection() {
+        // a single connection, waiting for it fails quickly
+        DataSource single = new DataSource();
+        single.setUrl("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        single.setDriverClassName("org.h2.Driver");
+        single.setMaxActive(1);
+        single.setMaxWait(1000);
+        try {
+            JdbcUserDetailsManager users = new JdbcUserDetailsManager();
+            users.setDataSource(single);
+            JdbcShorthandDao dao = new JdbcShorthandDao(single, users);
+            dao.createSchema();
+            List<Shorthand> batch = new ArrayList<>();
+            for (int i = 0; i < 2500; i++) {
+                batch.add(shorthand("user", "code" + i, "http://example.com/" + i));
+            }
+            dao.insertShorthands(batch);
+            dao.insertShorthand(shorthand("other", "other", "http://example.com/0"));
+
+            Map<String, Long> hits = new HashMap<>();
+            dao.forEachUserShorthand("user", (shorthand, count) -> {
+                // needs the connection the page was read with
+                hits.put(shorthand.getShortUrl(), dao.getHits(shorthand.getShortUrl()));
+            });
+            assertEquals(2500, hits.size());
+        } finally {
+            single.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapShorthandStoreTest {
+
+    @Test
+    public void insertsAndFindsByCodeAndByOwnerUrl() throws Exception {
+        OffHeapShorthandStore store = new OffHeapShorthandStore(16);
+        Shorthand shorthand = shorthand("user", "abc", "http://example.com/ünïcode");
+        assertSame(shorthand, store.insert(shorthand));
+
+        assertEquals(shorthand, store.get("abc"));
+        assertEquals(shorthand, store.get("user", "http://example.com/ünïcode"));
+        assertNull(store.get("abd"));
+        assertNull(store.get("other", "http://example.com/ünïcode"));
+
+        // same url of the owner returns the stored one, a taken code stores nothing
+        assertEquals(shorthand, store.insert(shorthand("user", "xyz", "http://example.com/ünïcode")));
+        assertNull(store.insert(shorthand("other", "abc", "http://example.com/other")));
+        assertNull(store.get("xyz"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void tablesGrowAndOwnersKeepTheirShorthands() throws Exception {
+        OffHeapShorthandStore store = new OffHeapShorthandStore(16);
+        for (int i = 0; i < 100000; i++) {
+            assertNotNull(store.insert(shorthand("user" + i % 10, "code" + i, "http://example.com/" + i)));
+        }
+
+        assertEquals(100000, store.size());
+        for (int i = 0; i < 100000; i += 997) {
+            assertEquals("http://example.com/" + i, store.get("code" + i).getUrl());
+            assertEquals("code" + i, store.get("user" + i % 10, "http://example.com/" + i).getShortUrl());
+        }
+        Set<String> codes = new HashSet<>();
+        for (Shorthand shorthand : store.getByOwner("user3")) {
+            assertEquals("user3", shorthand.getOwner());
+            codes.add(shorthand.getShortUrl());
+        }
+        assertEquals(10000, codes.size());
+        assertEquals(10000, store.getByOwner("user3").size());
+        assertEquals(0, store.getByOwner("nobody").size());
+    }
+
+    @Test
+    public void largestSupportedSize() throws Exception {
+        for (long expectedSize : new long[]{100_000_000, OffHeapShorthandStore.MAX_SIZE, Long.MAX_VALUE}) {
+            OffHeapShorthandStore store = new OffHeapShorthandStore(expectedSize);
+            // segments of the tables are allocated by the entries falling into them
+            assertEquals(0, store.offHeapBytes());
+            for (int i = 0; i < 200; i++) {
+                assertNotNull(store.insert(shorthand("user", "code" + i, "http://example.com/" + i)));
+            }
+            for (int i = 0; i < 200; i++) {
+                assertEquals("http://example.com/" + i, store.get("code" + i).getUrl());
+                assertEquals("code" + i, store.get("user", "http://example.com/" + i).getShortUrl());
+            }
+            assertNull(store.get("code200"));
+            // an arena and the touched segments, not the 4GB of both tables
+            assertTrue(store.offHeapBytes() < 128L << 20);
+        }
+    }
+
+    @Test
+    public void concurrentReadsSeeEveryCompletedInsert() throws Exception {
+        OffHeapShorthandStore store = new OffHeapShorthandStore(16);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int t = thread;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20000; i++) {
+                    String code = t + "-" + i;
+                    store.insert(shorthand("user" + t, code, "http://example.com/" + code));
+                    Shorthand found = store.get(code);
+                    if (found == null || !found.getUrl().equals("http://example.com/" + code)) {
+                        throw new AssertionError("lost " + code);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        assertEquals(160000, store.size());
+    }
+
+    private static Shorthand shorthand(String owner, String shortUrl, String url) {
+        return Shorthand.builder()
+                .owner(owner)
+                .shortUrl(shortUrl)
+                .url(url)
+                .redirectType(301)
+                .build();
+    }
+}
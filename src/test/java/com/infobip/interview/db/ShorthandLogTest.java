@@ -0,0 +1,183 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.generators.SequenceShortCodeGenerator;
+import com.infobip.interview.models.Shorthand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ShorthandLogTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("shorthand-log");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileSystemUtils.deleteRecursively(directory.toFile());
+    }
+
+    @Test
+    public void replaysCommittedRecords() throws Exception {
+        ShorthandLog log = open();
+        List<CompletableFuture<Void>> appends = new ArrayList<>();
+        appends.add(log.appendUser("user", "password"));
+        for (int i = 0; i < 1000; i++) {
+            appends.add(log.appendShorthand(shorthand("code" + i, "http://example.com/" + i)));
+        }
+        CompletableFuture.allOf(appends.toArray(new CompletableFuture[0])).join();
+        log.close();
+
+        InMemoryShorthandDao dao = recover();
+        assertNotNull(dao.getUser("user"));
+        assertEquals(1000, dao.getUserShorts("user").size());
+        assertEquals("http://example.com/42", dao.getShorthand("code42").getUrl());
+    }
+
+    @Test
+    public void snapshotKeepsStateAndHits() throws Exception {
+        ShorthandLog log = open();
+        HitCounters counters = new HitCounters();
+        InMemoryShorthandDao dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()), log, counters, new HeapShorthandStore());
+        dao.createUser("user", "password");
+        dao.insertShorthand(shorthand("before", "http://example.com/before"));
+        counters.add("before", 5);
+        dao.snapshot();
+        dao.insertShorthand(shorthand("after", "http://example.com/after"));
+        log.close();
+
+        HitCounters recoveredCounters = new HitCounters();
+        InMemoryShorthandDao recovered = recover(recoveredCounters);
+        assertNotNull(recovered.getShorthand("before"));
+        assertNotNull(recovered.getShorthand("after"));
+        assertNull(recovered.getShorthand("missing"));
+        assertEquals(5, recoveredCounters.get("before"));
+    }
+
+    @Test
+    public void usersNotLoadedSinceRestartSurviveNextSnapshot() throws Exception {
+        ShorthandLog log = open();
+        HitCounters counters = new HitCounters();
+        InMemoryShorthandDao dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()), log, counters, new HeapShorthandStore());
+        dao.insertShorthand(shorthand("code", "http://example.com"));
+        counters.add("code", 3);
+        dao.snapshot();
+        log.close();
+
+        InMemoryShorthandDao restarted = recover();
+        restarted.insertShorthand(Shorthand.builder()
+                .owner("other")
+                .shortUrl("other")
+                .url("http://example.com/other")
+                .redirectType(301)
+                .build());
+        restarted.snapshot();
+
+        HitCounters recoveredCounters = new HitCounters();
+        InMemoryShorthandDao recovered = recover(recoveredCounters);
+        assertEquals("http://example.com", recovered.getShorthand("code").getUrl());
+        assertEquals("http://example.com/other", recovered.getShorthand("other").getUrl());
+        assertEquals(3, recoveredCounters.get("code"));
+    }
+
+    @Test
+    public void hitTotalsOverlappingSnapshotAreNotAddedTwice() throws Exception {
+        ShorthandLog log = open();
+        HitCounters counters = new HitCounters();
+        InMemoryShorthandDao dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()), log, counters, new HeapShorthandStore());
+        dao.insertShorthand(shorthand("code", "http://example.com"));
+        counters.add("code", 3);
+        log.appendHits(Collections.singletonMap("code", 3L)).join();
+        dao.snapshot();
+        counters.add("code", 2);
+        log.appendHits(Collections.singletonMap("code", 5L)).join();
+        log.close();
+
+        HitCounters recoveredCounters = new HitCounters();
+        InMemoryShorthandDao recovered = recover(recoveredCounters);
+        assertNotNull(recovered.getShorthand("code"));
+        assertEquals(5, recoveredCounters.get("code"));
+
+        // the owner is not loaded before the next snapshot, the replayed total still goes into it
+        InMemoryShorthandDao restarted = recover();
+        restarted.snapshot();
+        HitCounters snapshotCounters = new HitCounters();
+        recover(snapshotCounters).getShorthand("code");
+        assertEquals(5, snapshotCounters.get("code"));
+    }
+
+    @Test
+    public void sequenceResumesPastRecoveredCodes() throws Exception {
+        ShorthandLog log = open();
+        InMemoryShorthandDao dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()), log, new HitCounters(), new HeapShorthandStore());
+        SequenceShortCodeGenerator generator = new SequenceShortCodeGenerator(6, 0, 1, 10, 0);
+        for (int i = 0; i < 25; i++) {
+            dao.insertShorthand(shorthand(generator.next(), "http://example.com/" + i));
+        }
+        dao.snapshot();
+        dao.insertShorthand(shorthand(generator.next(), "http://example.com/after"));
+        log.close();
+
+        InMemoryShorthandDao recovered = recover();
+        SequenceShortCodeGenerator restarted = new SequenceShortCodeGenerator(6, 0, 1, 10, 0);
+        recovered.forEachShortUrl(restarted::skipPast);
+        for (int i = 0; i < 100; i++) {
+            assertNotNull(recovered.insertShorthand(shorthand(restarted.next(), "http://example.com/new/" + i)));
+        }
+    }
+
+    @Test
+    public void tornTailIsIgnored() throws Exception {
+        ShorthandLog log = open();
+        log.appendShorthand(shorthand("code", "http://example.com")).join();
+        log.close();
+        try (OutputStream out = Files.newOutputStream(Files.list(directory).findFirst().get(), StandardOpenOption.APPEND)) {
+            out.write(new byte[]{0, 0, 0, 42, 1, 2});
+        }
+
+        assertNotNull(recover().getShorthand("code"));
+    }
+
+    private ShorthandLog open() throws Exception {
+        ShorthandLog log = new ShorthandLog(true, directory.toString());
+        log.open();
+        return log;
+    }
+
+    private InMemoryShorthandDao recover() throws Exception {
+        return recover(new HitCounters());
+    }
+
+    private InMemoryShorthandDao recover(HitCounters counters) throws Exception {
+        InMemoryShorthandDao dao = new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()), open(), counters, new HeapShorthandStore());
+        dao.recover();
+        return dao;
+    }
+
+    private Shorthand shorthand(String shortUrl, String url) {
+        return Shorthand.builder()
+                .owner("user")
+                .shortUrl(shortUrl)
+                .url(url)
+                .redirectType(302)
+                .build();
+    }
+}
@@ -0,0 +1,125 @@
+package com.infobip.interview.db;
+
+import com.infobip.interview.models.Shorthand;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ShorthandSnapshotTest {
+
+    private static final int USERS = 100;
+    private static final int SHORTHANDS_PER_USER = 1000;
+
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("shorthands", ".dat");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void findsEveryShorthandInPlace() throws Exception {
+        write();
+        ShorthandSnapshot snapshot = ShorthandSnapshot.open(file);
+
+        assertEquals(USERS * SHORTHANDS_PER_USER, snapshot.size());
+        assertEquals(USERS, snapshot.ownerCount());
+        for (int user = 0; user < USERS; user++) {
+            for (int i = 0; i < SHORTHANDS_PER_USER; i++) {
+                Shorthand shorthand = snapshot.find(code(user, i));
+                assertEquals("user" + user, shorthand.getOwner());
+                assertEquals("http://example.com/" + user + "/" + i, shorthand.getUrl());
+                assertEquals(i % 2 == 0 ? 301 : 302, (int) shorthand.getRedirectType());
+                assertEquals(i, snapshot.count(code(user, i)));
+            }
+        }
+        assertNull(snapshot.find("missing"));
+        assertFalse(snapshot.contains("missing"));
+    }
+
+    @Test
+    public void visitsShorthandsOfOneOwner() throws Exception {
+        write();
+        ShorthandSnapshot snapshot = ShorthandSnapshot.open(file);
+
+        Map<String, Long> counts = new HashMap<>();
+        assertTrue(snapshot.visitOwner("user42", new ShorthandSnapshot.Visitor() {
+            @Override
+            public void owner(String owner) {
+                assertEquals("user42", owner);
+            }
+
+            @Override
+            public void shorthand(Shorthand shorthand, long count) {
+                counts.put(shorthand.getShortUrl(), count);
+            }
+        }));
+        assertEquals(SHORTHANDS_PER_USER, counts.size());
+        assertEquals(7L, (long) counts.get(code(42, 7)));
+        assertFalse(snapshot.visitOwner("nobody", null));
+    }
+
+    @Test
+    public void codeTableIsBuiltFromTheRecordsReadBack() throws Exception {
+        String longUrl = "http://example.com/" + StringUtils.repeat('a', 100000);
+        try (ShorthandSnapshot.Writer writer = ShorthandSnapshot.create(file)) {
+            writer.owner("user");
+            writer.shorthand(Shorthand.builder().owner("user").shortUrl("short").url("http://example.com").redirectType(301).build(), 1);
+            // larger than the write buffer, written on its own
+            writer.shorthand(Shorthand.builder().owner("user").shortUrl("long").url(longUrl).redirectType(301).build(), 2);
+            writer.shorthand(Shorthand.builder().owner("user").shortUrl("k\u00f6d").url("http://example.com/k").redirectType(302).build(), 3);
+            writer.finish();
+        }
+        ShorthandSnapshot snapshot = ShorthandSnapshot.open(file);
+        assertEquals("http://example.com", snapshot.find("short").getUrl());
+        assertEquals(longUrl, snapshot.find("long").getUrl());
+        assertEquals(3, snapshot.count("k\u00f6d"));
+    }
+
+    @Test
+    public void emptySnapshot() throws Exception {
+        try (ShorthandSnapshot.Writer writer = ShorthandSnapshot.create(file)) {
+            writer.finish();
+        }
+        ShorthandSnapshot snapshot = ShorthandSnapshot.open(file);
+        assertEquals(0, snapshot.size());
+        assertNull(snapshot.find("code"));
+    }
+
+    private void write() throws Exception {
+        try (ShorthandSnapshot.Writer writer = ShorthandSnapshot.create(file)) {
+            for (int user = 0; user < USERS; user++) {
+                writer.owner("user" + user);
+                for (int i = 0; i < SHORTHANDS_PER_USER; i++) {
+                    writer.shorthand(Shorthand.builder()
+                            .owner("user" + user)
+                            .shortUrl(code(user, i))
+                            .url("http://example.com/" + user + "/" + i)
+                            .redirectType(i % 2 == 0 ? 301 : 302)
+                            .build(), i);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    private static String code(int user, int i) {
+        return Integer.toString(user * SHORTHANDS_PER_USER + i, 36);
+    }
+}
@@ -0,0 +1,82 @@
+package com.infobip.interview.generators;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SequenceShortCodeGeneratorTest {
+
+    private static final int THREADS = 16;
+    private static final int CODES_PER_THREAD = 10000;
+
+    @Test
+    public void codesAreUniqueAcrossThreadsAndNodes() throws Exception {
+        Set<String> codes = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int node = 0; node < 3; node++) {
+            SequenceShortCodeGenerator generator = new SequenceShortCodeGenerator(6, node, 3, 100, 0);
+            for (int i = 0; i < THREADS; i++) {
+                executor.execute(() -> {
+                    for (int j = 0; j < CODES_PER_THREAD; j++) {
+                        codes.add(generator.next());
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertEquals(3 * THREADS * CODES_PER_THREAD, codes.size());
+    }
+
+    @Test
+    public void resumesPastCodesOfAllNodes() throws Exception {
+        SequenceShortCodeGenerator before = new SequenceShortCodeGenerator(6, 1, 3, 100, 0);
+        Set<String> issued = new HashSet<>();
+        for (int i = 0; i < 250; i++) {
+            issued.add(before.next());
+        }
+        // a code of another node further ahead, a custom one and one beyond a long
+        issued.add(Base62.encode(2000 * 3 + 2, 6));
+        issued.add("my-link");
+        issued.add("zzzzzzzzzzzz");
+
+        SequenceShortCodeGenerator restarted = new SequenceShortCodeGenerator(6, 1, 3, 100, 0);
+        issued.forEach(restarted::skipPast);
+        String next = restarted.next();
+        assertFalse(issued.contains(next));
+        assertEquals(2001 * 3 + 1, Base62.decode(next));
+    }
+
+    @Test
+    public void startNeedNotBeMultipleOfBlockSize() throws Exception {
+        SequenceShortCodeGenerator generator = new SequenceShortCodeGenerator(6, 0, 1, 1000, 1500);
+        assertEquals(1500, Base62.decode(generator.next()));
+    }
+
+    @Test
+    public void base62PadsToMinLength() throws Exception {
+        assertEquals("000000", Base62.encode(0, 6));
+        assertEquals("00000z", Base62.encode(61, 6));
+        assertEquals("000010", Base62.encode(62, 6));
+        assertEquals("AzL8n0Y58m7", Base62.encode(Long.MAX_VALUE, 6));
+    }
+
+    @Test
+    public void base62DecodesWhatItEncodes() throws Exception {
+        for (long value : new long[]{0, 61, 62, 1234567890L, Long.MAX_VALUE}) {
+            assertEquals(value, Base62.decode(Base62.encode(value, 6)));
+        }
+        assertEquals(-1, Base62.decode(""));
+        assertEquals(-1, Base62.decode("a-b"));
+        assertEquals(-1, Base62.decode("AzL8n0Y58m8"));
+    }
+}
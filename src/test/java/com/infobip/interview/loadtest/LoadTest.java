@@ -0,0 +1,324 @@
+package com.infobip.interview.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infobip.interview.ShorthandApplication;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP load generator for the shorthand API. Starts the application on a free local port, unless
+ * {@code target} points to a running instance, registers {@code links} short urls for each of
+ * {@code accounts} accounts and then lets {@code threads} workers send a weighted mix of requests
+ * for {@code duration} seconds, the first {@code warmup} seconds of which are not measured.
+ * Reports throughput and latency percentiles per request type.
+ * <p>
+ * The started application runs in {@code mode} servlet or async (see {@code shorthand.server.mode})
+ * with {@code server-threads} container threads, writing its log to a temporary directory if
+ * {@code persistence} is true. Comparing the modes with few server threads, many client threads
+ * and persistence shows how many registrations each keeps in flight, e.g.
+ * {@code "server-threads=8 threads=64 persistence=true mix=register:1 mode=async"}.
+ * <p>
+ * Run with {@code mvn -P loadtest verify -Dloadtest.args="threads=32 duration=60 mix=redirect:90,register:8,statistic:2"},
+ * arguments not given keep their defaults below.
+ */
+public class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("target", "");
+        DEFAULTS.put("threads", "16");
+        DEFAULTS.put("duration", "30");
+        DEFAULTS.put("warmup", "5");
+        DEFAULTS.put("accounts", "10");
+        DEFAULTS.put("links", "1000");
+        DEFAULTS.put("mix", "redirect:85,register:10,statistic:4,account:1");
+        DEFAULTS.put("mode", "servlet");
+        DEFAULTS.put("server-threads", "200");
+        DEFAULTS.put("persistence", "false");
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long HIGHEST_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String baseUrl;
+    private final int threads;
+    private final List<Operation> mix = new ArrayList<>();
+    private final int totalWeight;
+    private final List<Account> accounts = new ArrayList<>();
+    private final List<String> shortUrls = new ArrayList<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private volatile boolean running = true;
+
+    private LoadTest(String baseUrl, Map<String, String> options) {
+        this.baseUrl = baseUrl;
+        this.threads = Integer.parseInt(options.get("threads"));
+        int weights = 0;
+        for (String entry : options.get("mix").split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation = new Operation(Type.valueOf(parts[0].toUpperCase()), Integer.parseInt(parts[1]));
+            mix.add(operation);
+            weights += operation.weight;
+        }
+        this.totalWeight = weights;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 0 || !DEFAULTS.containsKey(arg.substring(0, separator))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of " + DEFAULTS.keySet());
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        ConfigurableApplicationContext application = null;
+        String baseUrl = options.get("target");
+        if (baseUrl.isEmpty()) {
+            int port = freePort();
+            List<String> applicationArgs = new ArrayList<>();
+            applicationArgs.add("--server.port=" + port);
+            applicationArgs.add("--server.tomcat.max-threads=" + options.get("server-threads"));
+            applicationArgs.add("--shorthand.server.mode=" + options.get("mode"));
+            if (Boolean.parseBoolean(options.get("persistence"))) {
+                applicationArgs.add("--shorthand.persistence.enabled=true");
+                applicationArgs.add("--shorthand.persistence.directory=" + Files.createTempDirectory("loadtest"));
+            }
+            application = SpringApplication.run(ShorthandApplication.class, applicationArgs.toArray(new String[0]));
+            baseUrl = "http://localhost:" + port;
+        }
+        try {
+            LoadTest test = new LoadTest(baseUrl, options);
+            test.prepare(Integer.parseInt(options.get("accounts")), Integer.parseInt(options.get("links")));
+            test.run(Integer.parseInt(options.get("warmup")), Integer.parseInt(options.get("duration")), options, System.out);
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+        }
+    }
+
+    private void prepare(int accountCount, int links) throws IOException {
+        for (int a = 0; a < accountCount; a++) {
+            Account account = createAccount();
+            accounts.add(account);
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < links; i++) {
+                body.append(i == 0 ? "" : ",").append("{\"url\":\"http://example.com/").append(account.username).append('/').append(i).append("\"}");
+            }
+            Response response = request("POST", "/register/bulk", body.append(']').toString(), account);
+            for (JsonNode result : MAPPER.readTree(response.body)) {
+                shortUrls.add(path(result.get("shortUrl").asText()));
+            }
+        }
+    }
+
+    private void run(int warmupSeconds, int durationSeconds, Map<String, String> options, PrintStream out) throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.submit(this::work);
+        }
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        for (Operation operation : mix) {
+            operation.reset();
+        }
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(durationSeconds - warmupSeconds);
+        List<Histogram> histograms = new ArrayList<>();
+        for (Operation operation : mix) {
+            histograms.add(operation.latencies.getIntervalHistogram());
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+
+        out.printf("%nTarget %s, %d threads, %.1f s measured, %s%n", baseUrl, threads, seconds, options);
+        out.printf("%-10s %10s %10s %8s %9s %9s %9s %9s %9s%n", "request", "count", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (int i = 0; i < mix.size(); i++) {
+            Operation operation = mix.get(i);
+            Histogram histogram = histograms.get(i);
+            total += histogram.getTotalCount();
+            out.printf("%-10s %10d %10.0f %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    operation.type.name().toLowerCase(),
+                    histogram.getTotalCount(),
+                    histogram.getTotalCount() / seconds,
+                    operation.errors.sum(),
+                    millis(histogram.getValueAtPercentile(50)),
+                    millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)),
+                    millis(histogram.getValueAtPercentile(99.9)),
+                    millis(histogram.getMaxValue()));
+        }
+        out.printf("%-10s %10d %10.0f%n", "total", total, total / seconds);
+    }
+
+    private void work() {
+        while (running) {
+            Operation operation = pick();
+            long start = System.nanoTime();
+            boolean ok;
+            try {
+                ok = execute(operation.type);
+            } catch (IOException | RuntimeException e) {
+                ok = false;
+            }
+            operation.latencies.recordValue(Math.min(System.nanoTime() - start, HIGHEST_LATENCY_NANOS));
+            if (!ok) {
+                operation.errors.increment();
+            }
+        }
+    }
+
+    private boolean execute(Type type) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Account account = accounts.get(random.nextInt(accounts.size()));
+        switch (type) {
+            case REDIRECT:
+                return request("GET", shortUrls.get(random.nextInt(shortUrls.size())), null, null).status == HttpURLConnection.HTTP_MOVED_TEMP;
+            case REGISTER:
+                String body = "{\"url\":\"http://example.com/load/" + sequence.incrementAndGet() + "\"}";
+                return request("POST", "/register", body, account).status == HttpURLConnection.HTTP_OK;
+            case STATISTIC:
+                return request("GET", "/statistic/" + account.username + "/links?limit=100", null, account).status == HttpURLConnection.HTTP_OK;
+            case ACCOUNT:
+                createAccount();
+                return true;
+            default:
+                throw new IllegalStateException("Unknown request type " + type);
+        }
+    }
+
+    private Operation pick() {
+        int value = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Operation operation : mix) {
+            value -= operation.weight;
+            if (value < 0) {
+                return operation;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private Account createAccount() throws IOException {
+        String username = "load" + Long.toString(System.nanoTime(), 36) + sequence.incrementAndGet();
+        Response response = request("POST", "/account", "{\"AccountId\":\"" + username + "\"}", null);
+        if (response.status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Could not create account " + username + ": " + response.status);
+        }
+        return new Account(username, MAPPER.readTree(response.body).get("password").asText());
+    }
+
+    private Response request(String method, String path, String body, Account account) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        connection.setInstanceFollowRedirects(false);
+        if (account != null) {
+            String credentials = account.username + ":" + account.password;
+            connection.setRequestProperty("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        // reading the body to the end lets the connection be reused
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) > 0) {
+                    bytes.write(buffer, 0, read);
+                }
+            }
+        }
+        return new Response(status, bytes.toByteArray());
+    }
+
+    private static String path(String shortUrl) {
+        return shortUrl.substring(shortUrl.lastIndexOf('/'));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private enum Type {
+        ACCOUNT, REGISTER, REDIRECT, STATISTIC
+    }
+
+    private static class Operation {
+        final Type type;
+        final int weight;
+        final Recorder latencies = new Recorder(HIGHEST_LATENCY_NANOS, 3);
+        final LongAdder errors = new LongAdder();
+
+        Operation(Type type, int weight) {
+            this.type = type;
+            this.weight = weight;
+        }
+
+        void reset() {
+            latencies.reset();
+            errors.reset();
+        }
+    }
+
+    private static class Account {
+        final String username;
+        final String password;
+
+        Account(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+    }
+
+    private static class Response {
+        final int status;
+        final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
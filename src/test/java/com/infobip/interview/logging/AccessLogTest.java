@@ -0,0 +1,41 @@
+package com.infobip.interview.logging;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AccessLogTest {
+
+    @Test
+    public void writesQueuedEntriesAsJsonLines() throws Exception {
+        Path file = Files.createTempDirectory("access-log").resolve("access.log");
+        AccessLog accessLog = new AccessLog(true, file.toString(), 1.0, 16);
+        accessLog.start();
+        accessLog.log(new AccessLog.Entry(0, "GET", "/abc", "redirect", 302, 1500000, null, "http://example.com/\"q\""));
+        accessLog.log(new AccessLog.Entry(0, "POST", "/register", "register", 200, 2000, "user", null));
+        accessLog.stop();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("{\"time\":\"1970-01-01T00:00:00Z\",\"method\":\"GET\",\"path\":\"/abc\",\"endpoint\":\"redirect\","
+                + "\"status\":302,\"durationMicros\":1500,\"detail\":\"http://example.com/\\\"q\\\"\"}", lines.get(0));
+        assertEquals("{\"time\":\"1970-01-01T00:00:00Z\",\"method\":\"POST\",\"path\":\"/register\",\"endpoint\":\"register\","
+                + "\"status\":200,\"durationMicros\":2,\"principal\":\"user\"}", lines.get(1));
+        assertEquals(2, accessLog.getWrittenCount());
+    }
+
+    @Test
+    public void samplesOnlySuccessfulRequests() {
+        AccessLog accessLog = new AccessLog(true, "unused.log", 0, 16);
+        assertFalse(accessLog.isLogged(302));
+        assertTrue(accessLog.isLogged(400));
+        assertFalse(new AccessLog(false, "unused.log", 1.0, 16).isLogged(500));
+    }
+}
@@ -0,0 +1,45 @@
+package com.infobip.interview.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void writesPrometheusText() {
+        MetricsRegistry registry = new MetricsRegistry();
+        LongAdder collisions = registry.counter("collisions_total", "Collisions");
+        collisions.add(3);
+        assertSame(collisions, registry.counter("collisions_total", "Collisions"));
+        registry.gauge("queue_size", "Queue size", () -> 1.5, "queue", "clicks");
+        LatencyHistogram latency = registry.histogram("latency_seconds", "Latency", "endpoint", "redirect");
+        latency.record(TimeUnit.MICROSECONDS.toNanos(50));
+        latency.record(TimeUnit.MILLISECONDS.toNanos(3));
+        latency.record(TimeUnit.SECONDS.toNanos(20));
+
+        String text = registry.prometheus();
+        assertTrue(text, text.contains("# TYPE collisions_total counter\ncollisions_total 3\n"));
+        assertTrue(text, text.contains("# TYPE queue_size gauge\nqueue_size{queue=\"clicks\"} 1.5\n"));
+        assertTrue(text, text.contains("latency_seconds_bucket{endpoint=\"redirect\",le=\"0.0001\"} 1\n"));
+        assertTrue(text, text.contains("latency_seconds_bucket{endpoint=\"redirect\",le=\"0.0025\"} 1\n"));
+        assertTrue(text, text.contains("latency_seconds_bucket{endpoint=\"redirect\",le=\"0.005\"} 2\n"));
+        assertTrue(text, text.contains("latency_seconds_bucket{endpoint=\"redirect\",le=\"10\"} 2\n"));
+        assertTrue(text, text.contains("latency_seconds_bucket{endpoint=\"redirect\",le=\"+Inf\"} 3\n"));
+        assertTrue(text, text.contains("latency_seconds_count{endpoint=\"redirect\"} 3\n"));
+        assertEquals(3.0, registry.getValues().get("collisions_total"), 0);
+        assertEquals(3.0, registry.getValues().get("latency_seconds_count{endpoint=\"redirect\"}"), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNameOfAnotherType() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("requests", "Requests");
+        registry.histogram("requests", "Requests");
+    }
+}
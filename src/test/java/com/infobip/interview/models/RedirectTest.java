@@ -0,0 +1,27 @@
+package com.infobip.interview.models;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RedirectTest {
+
+    @Test
+    public void asciiLocationIsTheUrl() throws Exception {
+        String url = "http://stackoverflow.com/questions/1567929?rq=1";
+        assertSame(url, Redirect.location(url));
+    }
+
+    @Test
+    public void internationalHostIsPunycode() throws Exception {
+        assertEquals("http://user@xn--bcher-kva.example:8080/path?q=1",
+                Redirect.location("http://user@bücher.example:8080/path?q=1"));
+    }
+
+    @Test
+    public void otherCharactersArePercentEncoded() throws Exception {
+        assertEquals("http://example.com/%C5%A1ifra?q=%E2%82%AC",
+                Redirect.location("http://example.com/šifra?q=€"));
+    }
+}
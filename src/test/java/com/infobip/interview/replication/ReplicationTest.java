@@ -0,0 +1,120 @@
+package com.infobip.interview.replication;
+
+import com.infobip.interview.clicks.ClickPipeline;
+import com.infobip.interview.db.ClickAnalytics;
+import com.infobip.interview.db.ClickResolution;
+import com.infobip.interview.db.HeapShorthandStore;
+import com.infobip.interview.db.HitCounters;
+import com.infobip.interview.db.InMemoryShorthandDao;
+import com.infobip.interview.db.ShorthandLog;
+import com.infobip.interview.metrics.MetricsRegistry;
+import com.infobip.interview.models.Shorthand;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicationTest {
+
+    private final HitCounters leaderCounters = new HitCounters();
+    private final ShorthandLog leaderLog = new ShorthandLog(false, "data");
+    private final InMemoryShorthandDao leaderDao = dao(leaderLog, leaderCounters);
+    private final ClickAnalytics leaderAnalytics = new ClickAnalytics();
+
+    private final HitCounters followerCounters = new HitCounters();
+    private final ShorthandLog followerLog = new ShorthandLog(false, "data");
+    private final InMemoryShorthandDao followerDao = dao(followerLog, followerCounters);
+    private final ClickPipeline followerClicks = new ClickPipeline(followerDao, new ClickAnalytics(), 1024, "drop");
+
+    private ReplicationLeader leader;
+    private ReplicationFollower follower;
+
+    private static InMemoryShorthandDao dao(ShorthandLog log, HitCounters counters) {
+        return new InMemoryShorthandDao(new InMemoryUserDetailsManager(Collections.emptyList()), log, counters, new HeapShorthandStore());
+    }
+
+    private static Shorthand shorthand(String owner, String shortUrl) {
+        return Shorthand.builder().owner(owner).shortUrl(shortUrl).url("http://example.com/" + shortUrl).redirectType(302).build();
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(what, System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        leader = new ReplicationLeader(leaderDao, leaderAnalytics, leaderLog, new MetricsRegistry(), "localhost", port, 4, 100);
+        leader.start();
+        follower = new ReplicationFollower(followerDao, followerClicks, new MetricsRegistry(), "localhost", port, 1000, 100, 50);
+        followerClicks.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        follower.stop();
+        followerClicks.stop();
+        leader.stop();
+    }
+
+    @Test
+    public void replicaGetsStateBeforeAndChangesAfterItConnected() throws Exception {
+        leaderDao.createUser("before", "secret");
+        leaderDao.insertShorthand(shorthand("before", "aaaaaa"));
+        follower.start();
+        await("dump", () -> followerDao.getShorthand("aaaaaa") != null);
+        assertEquals("secret", followerDao.getUser("before").getPassword());
+
+        leaderDao.createUser("after", "secret");
+        leaderDao.insertShorthand(shorthand("after", "bbbbbb"));
+        await("change", () -> followerDao.getShorthand("bbbbbb") != null);
+        assertEquals(1, followerDao.getUserShorts("after").size());
+        await("position", () -> follower.getPosition() == leader.position());
+    }
+
+    @Test
+    public void replicaFallingBehindTheBacklogGetsADump() throws Exception {
+        follower.start();
+        await("connected", follower::isConnected);
+        follower.stop();
+        // more changes than the backlog of 4 keeps
+        for (int i = 0; i < 10; i++) {
+            leaderDao.insertShorthand(shorthand("user", "code" + i));
+        }
+        follower.start();
+        await("dump", () -> followerDao.getUserShorts("user").size() == 10);
+    }
+
+    @Test
+    public void clicksOnReplicaAreCountedByLeaderAndCountsComeBack() throws Exception {
+        leaderDao.insertShorthand(shorthand("user", "cccccc"));
+        follower.start();
+        await("dump", () -> followerDao.getShorthand("cccccc") != null);
+
+        for (int i = 0; i < 5; i++) {
+            followerClicks.click("cccccc");
+        }
+        leaderDao.addHits(Collections.singletonMap("cccccc", 2L));
+        await("leader", () -> leaderCounters.get("cccccc") == 7);
+        await("replica", () -> followerCounters.get("cccccc") == 7);
+        // only the replica's clicks, the hits added on the leader are not clicks
+        await("analytics", () -> {
+            long[] clicks = leaderAnalytics.counts("cccccc", ClickResolution.DAY, 2, System.currentTimeMillis());
+            return clicks[0] + clicks[1] == 5;
+        });
+    }
+}
@@ -0,0 +1,71 @@
+package com.infobip.interview.security;
+
+import org.junit.Test;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CachingAuthenticationProviderTest {
+
+    private final AtomicInteger checks = new AtomicInteger();
+    private final HashingPasswordEncoder encoder = new HashingPasswordEncoder(4);
+    private final String hash = encoder.encode("secret");
+
+    private final AuthenticationProvider delegate = new AuthenticationProvider() {
+        @Override
+        public Authentication authenticate(Authentication authentication) {
+            checks.incrementAndGet();
+            if (!encoder.matches((String) authentication.getCredentials(), hash)) {
+                throw new BadCredentialsException("Bad credentials");
+            }
+            return new UsernamePasswordAuthenticationToken(authentication.getName(), null, AuthorityUtils.createAuthorityList("ROLE_USER"));
+        }
+
+        @Override
+        public boolean supports(Class<?> authentication) {
+            return true;
+        }
+    };
+
+    @Test
+    public void verifiesCredentialsOnce() {
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(delegate, 100, 60);
+        Authentication first = provider.authenticate(new UsernamePasswordAuthenticationToken("user", "secret"));
+        Authentication second = provider.authenticate(new UsernamePasswordAuthenticationToken("user", "secret"));
+        assertTrue(first.isAuthenticated());
+        assertSame(first, second);
+        assertEquals(1, checks.get());
+    }
+
+    @Test
+    public void neverCachesFailures() {
+        CachingAuthenticationProvider provider = new CachingAuthenticationProvider(delegate, 100, 60);
+        provider.authenticate(new UsernamePasswordAuthenticationToken("user", "secret"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                provider.authenticate(new UsernamePasswordAuthenticationToken("user", "wrong"));
+                fail("wrong password accepted");
+            } catch (BadCredentialsException expected) {
+                // checked against the hash every time
+            }
+        }
+        assertEquals(3, checks.get());
+    }
+
+    @Test
+    public void acceptsPlainTextPasswordsOfOldAccounts() {
+        assertTrue(encoder.matches("secret", hash));
+        assertTrue(encoder.matches("secret", "secret"));
+        assertFalse(encoder.matches("secret", "other"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.infobip.interview.web;
+
+import com.infobip.interview.models.RequestWrapper;
+import io.restassured.RestAssured;
+import io.restassured.builder.RequestSpecBuilder;
+import io.restassured.http.ContentType;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Registration in {@code shorthand.server.mode=async} with the log enabled, so the response is
+ * only written once the log writer has stored the shorthand.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"shorthand.server.mode=async",
+                "shorthand.persistence.enabled=true",
+                "shorthand.persistence.directory=target/async-register-test",
+                "spring.jmx.enabled=false"})
+public class AsyncRegisterControllerTest {
+
+    private static final String URL = "https://stackoverflow.com/questions/1567929/website-safe-data-access-architecture-question?rq=1";
+
+    @LocalServerPort
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        RestAssured.requestSpecification = new RequestSpecBuilder()
+                .setBaseUri("http://localhost")
+                .setPort(port)
+                .setContentType(ContentType.JSON)
+                .build()
+                .log().all();
+    }
+
+    @Test
+    public void registerAsync() throws Exception {
+        String username = RandomStringUtils.randomAlphanumeric(6);
+        String password = given().body(RequestWrapper.builder().username(username).build())
+                .post("/account").then().log().all().extract().path("password");
+        RequestWrapper body = RequestWrapper.builder().url(URL).redirectType("301").build();
+
+        String shortUrl = given()
+                .auth().basic(username, password)
+                .body(body)
+                .when()
+                .post("/register")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ContentType.JSON)
+                .body("shortUrl", startsWith("http://localhost:" + port + "/"))
+                .extract().path("shortUrl");
+
+        // the same url again is answered with the stored shorthand without waiting for the log
+        String again = given()
+                .auth().basic(username, password)
+                .body(body)
+                .post("/register")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .extract().path("shortUrl");
+        assertEquals(shortUrl, again);
+
+        given()
+                .redirects().follow(false)
+                .when()
+                .get(shortUrl)
+                .then().log().all()
+                .statusCode(HttpStatus.MOVED_PERMANENTLY.value())
+                .header("Location", equalTo(URL));
+    }
+
+    @Test
+    public void registerAsyncInvalidUrl() throws Exception {
+        String username = RandomStringUtils.randomAlphanumeric(6);
+        String password = given().body(RequestWrapper.builder().username(username).build())
+                .post("/account").then().log().all().extract().path("password");
+
+        given()
+                .auth().basic(username, password)
+                .body(RequestWrapper.builder().url("InvalidUrlHere").build())
+                .when()
+                .post("/register")
+                .then().log().all()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body("success", equalTo(false));
+    }
+}
@@ -5,7 +5,10 @@ import com.infobip.interview.models.User;
 import io.restassured.RestAssured;
 import io.restassured.builder.RequestSpecBuilder;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
+import io.restassured.specification.RequestSpecification;
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,19 +16,33 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasValue;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 
 /**
  * Created by mikhail.davydov on 27.09.2017.
  */
 @RunWith(SpringRunner.class)
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.DEFINED_PORT,
+        properties = {"shorthand.metrics.scrape-username=" + ShorthandControllerTest.SCRAPE_USERNAME,
+                "shorthand.metrics.scrape-password=" + ShorthandControllerTest.SCRAPE_PASSWORD})
 public class ShorthandControllerTest {
 
+    static final String SCRAPE_USERNAME = "scraper";
+    static final String SCRAPE_PASSWORD = "scrape-secret";
+
     private static final String LOCALHOST = "http://localhost";
     private static final int PORT = 8080;
     private static final String URL = "https://stackoverflow.com/questions/1567929/website-safe-data-access-architecture-question?rq=1";
@@ -170,6 +187,85 @@ public class ShorthandControllerTest {
                 .statusCode(HttpStatus.BAD_REQUEST.value());
     }
 
+    @Test
+    public void registerTooLongUrl() throws Exception {
+        User user = createUser();
+        String prefix = "https://example.com/";
+        RequestWrapper body = RequestWrapper.builder()
+                .url(prefix + StringUtils.repeat('a', Requests.MAX_URL_LENGTH - prefix.length() + 1))
+                .build();
+
+        given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .body(body)
+                .when()
+                .post("/register")
+                .then().log().all()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body("success", equalTo(false));
+    }
+
+    @Test
+    public void registerBulkValid() throws Exception {
+        User user = createUser();
+        List<RequestWrapper> body = Arrays.asList(
+                RequestWrapper.builder().url(URL).build(),
+                RequestWrapper.builder().url("InvalidUrlHere").build(),
+                RequestWrapper.builder().url(URL).redirectType(REDIRECT_TYPE).build());
+
+        List<Map<String, Object>> results = given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .body(body)
+                .when()
+                .post("/register/bulk")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ContentType.JSON)
+                .body("size()", equalTo(3))
+                .body("[0].shortUrl", notNullValue())
+                .body("[1].success", equalTo(false))
+                .extract().path("");
+        // the same url is registered once
+        assertEquals(results.get(0).get("shortUrl"), results.get(2).get("shortUrl"));
+    }
+
+    @Test
+    public void registerBulkNotAnObject() throws Exception {
+        User user = createUser();
+
+        given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .body("[{\"url\":\"" + URL + "\"}, 42, [1, 2], {\"url\":\"" + URL + "&b\"}]")
+                .when()
+                .post("/register/bulk")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .body("size()", equalTo(4))
+                .body("[0].shortUrl", notNullValue())
+                .body("[1].success", equalTo(false))
+                .body("[2].success", equalTo(false))
+                .body("[3].shortUrl", notNullValue());
+    }
+
+    @Test
+    public void registerBulkMalformedIsNotClosed() throws Exception {
+        User user = createUser();
+        String body;
+        try {
+            body = given()
+                    .auth().basic(user.getUsername(), user.getPassword())
+                    .body("[{\"url\":\"" + URL + "\"}, {\"url\":")
+                    .when()
+                    .post("/register/bulk")
+                    .then().log().all()
+                    .extract().asString();
+        } catch (Exception e) {
+            // the connection is aborted after the response was committed
+            return;
+        }
+        assertFalse(body, body.trim().endsWith("]"));
+    }
+
     @Test
     public void registerInvalidRedirectType() throws Exception {
         User user = createUser();
@@ -223,6 +319,103 @@ public class ShorthandControllerTest {
                 .body("$", hasValue(0));
     }
 
+    @Test
+    public void statisticNotModified() throws Exception {
+        User user = createUser();
+        createShortUrl(user.getUsername(), user.getPassword());
+
+        String etag = given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .pathParam("AccountId", user.getUsername())
+                .when()
+                .get("/statistic/{AccountId}")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .header("Cache-Control", equalTo("private, no-cache"))
+                .extract().header("ETag");
+
+        given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .pathParam("AccountId", user.getUsername())
+                .header("If-None-Match", etag)
+                .when()
+                .get("/statistic/{AccountId}")
+                .then().log().all()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+    }
+
+    @Test
+    public void statisticLinksPaged() throws Exception {
+        User user = createUser();
+        createShortUrl(user.getUsername(), user.getPassword());
+        given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .body(Arrays.asList(RequestWrapper.builder().url(URL + "&page=2").build()))
+                .post("/register/bulk")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value());
+
+        String cursor = given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .pathParam("AccountId", user.getUsername())
+                .queryParam("limit", 1)
+                .queryParam("sort", "url")
+                .when()
+                .get("/statistic/{AccountId}/links")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .contentType(ContentType.JSON)
+                .body("links.size()", equalTo(1))
+                .body("links[0].url", equalTo(URL))
+                .body("nextCursor", notNullValue())
+                .extract().path("nextCursor");
+
+        given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .pathParam("AccountId", user.getUsername())
+                .queryParam("limit", 1)
+                .queryParam("sort", "url")
+                .queryParam("cursor", cursor)
+                .when()
+                .get("/statistic/{AccountId}/links")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .body("links.size()", equalTo(1))
+                .body("links[0].url", equalTo(URL + "&page=2"))
+                .body("links[0].count", equalTo(0))
+                .body("nextCursor", equalTo(null));
+    }
+
+    @Test
+    public void statisticLinksByCountClickedBetweenPages() throws Exception {
+        User user = createUser();
+        given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .body(Arrays.asList(RequestWrapper.builder().url(URL + "&a").build(),
+                        RequestWrapper.builder().url(URL + "&b").build(),
+                        RequestWrapper.builder().url(URL + "&c").build()))
+                .post("/register/bulk")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value());
+
+        String cursor = statisticLinks(user, 1, null).getString("nextCursor");
+        List<String> rest = statisticLinks(user, 2, cursor).getList("links.shortUrl");
+        assertEquals(2, rest.size());
+
+        // the last link rises above the cursor's count of 0
+        String clicked = rest.get(1);
+        given().redirects().follow(false).get(clicked).then().statusCode(HttpStatus.FOUND.value());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!statisticLinks(user, 1, null).getString("links[0].shortUrl").equals(clicked)) {
+            assertTrue("click not counted", System.currentTimeMillis() < deadline);
+            Thread.sleep(50);
+        }
+
+        JsonPath page = statisticLinks(user, 2, cursor);
+        assertEquals(Arrays.asList(rest.get(0)), page.getList("links.shortUrl"));
+        assertNull(page.get("nextCursor"));
+    }
+
     @Test
     public void statisticNoAuth() throws Exception {
         String username = RandomStringUtils.randomAlphanumeric(6);
@@ -283,10 +476,109 @@ public class ShorthandControllerTest {
         String shortUrl = createShortUrl(user.getUsername(), user.getPassword());
 
         given()
+                .redirects().follow(false)
+                .when()
+                .get(shortUrl)
+                .then().log().all()
+                .statusCode(HttpStatus.FOUND.value())
+                .header("Location", equalTo(URL))
+                .header("Cache-Control", equalTo("no-store"));
+    }
+
+    @Test
+    public void redirectPermanentCacheable() throws Exception {
+        User user = createUser();
+        RequestWrapper body = RequestWrapper.builder()
+                .url(URL)
+                .redirectType("301")
+                .build();
+        String shortUrl = given().auth().basic(user.getUsername(), user.getPassword()).body(body).post("/register")
+                .then().log().all().extract().path("shortUrl");
+
+        given()
+                .redirects().follow(false)
                 .when()
                 .get(shortUrl)
                 .then().log().all()
+                .statusCode(HttpStatus.MOVED_PERMANENTLY.value())
+                .header("Cache-Control", startsWith("public, max-age="))
+                .header("Expires", notNullValue());
+    }
+
+    @Test
+    public void redirectUnknown() throws Exception {
+        given()
+                .when()
+                .get("/unknownShorthand")
+                .then().log().all()
+                .statusCode(HttpStatus.BAD_REQUEST.value());
+    }
+
+
+    // /metrics/prometheus
+    @Test
+    public void metricsScrapeAccount() throws Exception {
+        User user = createUser();
+        createShortUrl(user.getUsername(), user.getPassword());
+
+        String metrics = given()
+                .auth().basic(SCRAPE_USERNAME, SCRAPE_PASSWORD)
+                .when()
+                .get("/metrics/prometheus")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .extract().asString();
+        assertTrue(metrics, metrics.contains("http_request_duration_seconds_count{endpoint=\"register\"}"));
+    }
+
+    @Test
+    public void metricsNoScrapeAccount() throws Exception {
+        given()
+                .when()
+                .get("/metrics/prometheus")
+                .then().log().all()
                 .statusCode(HttpStatus.UNAUTHORIZED.value());
+
+        User user = createUser();
+        given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .when()
+                .get("/metrics/prometheus")
+                .then().log().all()
+                .statusCode(HttpStatus.FORBIDDEN.value());
+
+        given()
+                .auth().basic(SCRAPE_USERNAME, "wrong")
+                .when()
+                .get("/metrics/prometheus")
+                .then().log().all()
+                .statusCode(HttpStatus.UNAUTHORIZED.value());
+    }
+
+    @Test
+    public void scrapeAccountIsNoStoreAccount() throws Exception {
+        given()
+                .auth().basic(SCRAPE_USERNAME, SCRAPE_PASSWORD)
+                .body(RequestWrapper.builder().url(URL).build())
+                .when()
+                .post("/register")
+                .then().log().all()
+                .statusCode(HttpStatus.FORBIDDEN.value());
+
+        given()
+                .auth().basic(SCRAPE_USERNAME, SCRAPE_PASSWORD)
+                .when()
+                .get("/statistic/" + SCRAPE_USERNAME)
+                .then().log().all()
+                .statusCode(HttpStatus.FORBIDDEN.value());
+
+        given()
+                .body(RequestWrapper.builder().username(SCRAPE_USERNAME).build())
+                .when()
+                .post("/account")
+                .then().log().all()
+                .statusCode(HttpStatus.BAD_REQUEST.value())
+                .body("success", equalTo(false));
     }
 
 
@@ -300,6 +592,24 @@ public class ShorthandControllerTest {
                 .statusCode(HttpStatus.OK.value());
     }
 
+    @Test
+    public void helpNotModified() throws Exception {
+        String lastModified = given()
+                .when()
+                .get("/help")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .header("ETag", notNullValue())
+                .extract().header("Last-Modified");
+
+        given()
+                .header("If-Modified-Since", lastModified)
+                .when()
+                .get("/help")
+                .then().log().all()
+                .statusCode(HttpStatus.NOT_MODIFIED.value());
+    }
+
     private User createUser() {
         String username = RandomStringUtils.randomAlphanumeric(6);
         RequestWrapper body = RequestWrapper.builder()
@@ -315,4 +625,20 @@ public class ShorthandControllerTest {
                 .build();
         return given().auth().basic(username, password).body(body).post("/register").then().log().all().extract().path("shortUrl");
     }
-}
\ No newline at end of file
+
+    private JsonPath statisticLinks(User user, int limit, String cursor) {
+        RequestSpecification request = given()
+                .auth().basic(user.getUsername(), user.getPassword())
+                .pathParam("AccountId", user.getUsername())
+                .queryParam("limit", limit)
+                .queryParam("sort", "count");
+        if (cursor != null) {
+            request.queryParam("cursor", cursor);
+        }
+        return request.when()
+                .get("/statistic/{AccountId}/links")
+                .then().log().all()
+                .statusCode(HttpStatus.OK.value())
+                .extract().jsonPath();
+    }
+}